@@ -36,6 +36,7 @@ public class Activator implements BundleActivator {
     }
 
     public void stop(BundleContext bundleContext) throws Exception {
+        DisassemblyCache.shutdown();
         Activator.context = null;
         System.out.println("viper bundle stopped");
     }
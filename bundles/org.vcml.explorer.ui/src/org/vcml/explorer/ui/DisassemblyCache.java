@@ -0,0 +1,399 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.explorer.ui;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.osgi.framework.BundleContext;
+import org.vcml.session.Module;
+import org.vcml.session.ReplyParser;
+import org.vcml.session.Session;
+import org.vcml.session.SessionException;
+
+/**
+ * Disassembly cache shared by all processor views and sessions. Entries are
+ * keyed by processor kind, address range and the digests of the code pages
+ * covering it, so they become stale automatically once the code changes.
+ * Page digests are computed once per processor and simulation stop, either
+ * from the loaded image or with one <tt>read</tt> per page. Entries only
+ * store instruction bytes and text relative to the start address; physical
+ * addresses are dropped and symbols are resolved again when served, since
+ * both can differ for identical code. Recently used entries are kept in
+ * memory, all entries are appended to a file in the bundle data area that
+ * is memory mapped for lookup after a restart.
+ */
+public class DisassemblyCache {
+
+    public static final String CMD_READ = "read";
+
+    public static final String FILE_NAME = "disas.cache";
+
+    public static final int MAX_ENTRIES = 1024;
+
+    public static final long MAX_FILE_SIZE = 64l << 20;
+
+    public static final int MAX_INSN_SIZE = 16;
+
+    public static final int PAGE_SIZE = 4096;
+
+    private static DisassemblyCache instance = null;
+
+    private static class PageDigests {
+        private LocalTime time;
+
+        private long deltaCycle;
+
+        private HashMap<Long, byte[]> pages = new HashMap<Long, byte[]>();
+
+        private boolean isCurrent(Session session) {
+            return session.getTime().equals(time) && session.getDeltaCycle() == deltaCycle;
+        }
+
+        private void reset(Session session) {
+            time = session.getTime();
+            deltaCycle = session.getDeltaCycle();
+            pages.clear();
+        }
+    }
+
+    private WeakHashMap<Module, PageDigests> digests = new WeakHashMap<Module, PageDigests>();
+
+    private Map<String, String> entries = new LinkedHashMap<String, String>(MAX_ENTRIES, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private HashMap<String, Long> offsets = new HashMap<String, Long>();
+
+    private File file;
+
+    private FileChannel channel;
+
+    private MappedByteBuffer mapped;
+
+    public static synchronized DisassemblyCache getDefault() {
+        if (instance == null) {
+            BundleContext context = Activator.getContext();
+            instance = new DisassemblyCache(context != null ? context.getDataFile(FILE_NAME) : null);
+        }
+
+        return instance;
+    }
+
+    public static synchronized void shutdown() {
+        if (instance != null)
+            instance.close();
+        instance = null;
+    }
+
+    public static boolean canCache(Module processor) {
+        return processor != null && processor.findCommand(CMD_READ) != null;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    private static String key(String kind, long start, long end, List<byte[]> pages) {
+        MessageDigest md = newDigest();
+        if (md == null)
+            return null;
+
+        for (byte[] page : pages)
+            md.update(page);
+
+        StringBuilder builder = new StringBuilder(kind);
+        builder.append(String.format("@%x-%x#", start, end));
+        for (byte b : md.digest())
+            builder.append(String.format("%02x", b & 0xff));
+        return builder.toString();
+    }
+
+    private static String symbolOf(SymbolIndex symbols, long address) {
+        Symbol symbol = symbols != null ? symbols.findContaining(address) : null;
+        if (symbol == null)
+            return "";
+        return "[" + symbol.getName() + "+" + (address - symbol.getAddress()) + "]";
+    }
+
+    /**
+     * Converts a block into the cached form, one <tt>offset\tbytes\tsize\ttext</tt>
+     * line per instruction, or <tt>null</tt> if the block has unmapped pages.
+     */
+    private static String normalize(List<Instruction> block, long start) {
+        StringBuilder builder = new StringBuilder();
+        for (Instruction insn : block) {
+            if (insn.getInstruction().isEmpty())
+                return null;
+            builder.append(Long.toHexString(insn.getVirtualAddress() - start)).append('\t');
+            builder.append(insn.getInstruction()).append('\t');
+            builder.append(insn.getSize()).append('\t');
+            builder.append(insn.getDisassembly()).append('\n');
+        }
+
+        return builder.toString();
+    }
+
+    private static List<Instruction> denormalize(String text, long start, SymbolIndex symbols) {
+        List<Instruction> block = new ArrayList<Instruction>();
+        for (String line : text.split("\n")) {
+            String[] fields = line.split("\t", 4);
+            if (fields.length != 4)
+                continue;
+
+            long address = start + Long.parseUnsignedLong(fields[0], 16);
+            long size = Long.parseLong(fields[2]);
+            block.add(new Instruction(address, fields[1], size, fields[3], symbolOf(symbols, address)));
+        }
+
+        return block;
+    }
+
+    private static byte[] readCode(Module processor, long start, long end) {
+        try {
+            byte[] code = new byte[(int) (end - start)];
+            String arg0 = Long.toUnsignedString(start);
+            String arg1 = Long.toUnsignedString(end);
+            String result = processor.execute(CMD_READ, arg0, arg1);
+            return ReplyParser.parseBytes(result, code) == code.length ? code : null;
+        } catch (SessionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the digests of all pages overlapping [start, end) for the
+     * current simulation stop, or <tt>null</tt> if a page cannot be read.
+     */
+    private List<byte[]> pageDigests(Module processor, long start, long end, ImageCodeSource source) {
+        PageDigests table;
+        synchronized (this) {
+            table = digests.get(processor);
+            if (table == null)
+                digests.put(processor, table = new PageDigests());
+        }
+
+        List<byte[]> result = new ArrayList<byte[]>();
+        synchronized (table) {
+            Session session = processor.getSession();
+            if (!table.isCurrent(session))
+                table.reset(session);
+
+            long first = start & -PAGE_SIZE;
+            long last = (end - 1) & -PAGE_SIZE;
+            for (long page = first;; page += PAGE_SIZE) {
+                byte[] digest = table.pages.get(page);
+                if (digest == null) {
+                    byte[] code = source != null ? source.read(page, page + PAGE_SIZE) : null;
+                    if (code == null && canCache(processor))
+                        code = readCode(processor, page, page + PAGE_SIZE);
+                    MessageDigest md = newDigest();
+                    if (code == null || md == null)
+                        return null;
+                    table.pages.put(page, digest = md.digest(code));
+                }
+
+                result.add(digest);
+                if (page == last)
+                    break;
+            }
+        }
+
+        return result;
+    }
+
+    private void open() throws IOException {
+        if (file.length() > MAX_FILE_SIZE)
+            file.delete();
+
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        remap();
+
+        long valid = 0;
+        try {
+            while (mapped.remaining() > 0) {
+                String key = readString(mapped.position());
+                mapped.position(mapped.position() + 4 + mapped.getInt());
+                mapped.position(mapped.position() + 4 + mapped.getInt(mapped.position()));
+                offsets.put(key, valid);
+                valid = mapped.position();
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Discarding damaged disassembly cache tail at offset " + valid);
+            channel.truncate(valid);
+            remap();
+        }
+
+        channel.position(valid);
+    }
+
+    private void remap() throws IOException {
+        mapped = channel.map(MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    private String readString(long offset) {
+        int length = mapped.getInt((int) offset);
+        if (length < 0 || offset + 4 + length > mapped.capacity())
+            throw new IndexOutOfBoundsException("invalid record at offset " + offset);
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++)
+            data[i] = mapped.get((int) offset + 4 + i);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    private String load(String key) {
+        Long offset = offsets.get(key);
+        if (offset == null)
+            return null;
+
+        try {
+            if (offset >= mapped.capacity())
+                remap();
+            String stored = readString(offset);
+            if (!stored.equals(key))
+                return null;
+            return readString(offset + 4 + stored.getBytes(StandardCharsets.UTF_8).length);
+        } catch (IOException | RuntimeException e) {
+            offsets.remove(key);
+            return null;
+        }
+    }
+
+    private void store(String key, String text) {
+        if (channel == null)
+            return;
+
+        byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        byte[] t = text.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(8 + k.length + t.length);
+        record.putInt(k.length).put(k).putInt(t.length).put(t).flip();
+
+        try {
+            long offset = channel.position();
+            if (offset + record.remaining() > MAX_FILE_SIZE)
+                return;
+            while (record.hasRemaining())
+                channel.write(record);
+            offsets.put(key, offset);
+        } catch (IOException e) {
+            System.err.println("Error writing disassembly cache: " + e.getMessage());
+            close();
+        }
+    }
+
+    public DisassemblyCache(File file) {
+        this.file = file;
+        if (file == null)
+            return;
+
+        try {
+            open();
+        } catch (IOException e) {
+            System.err.println("Error opening disassembly cache: " + e.getMessage());
+            close();
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            if (channel != null)
+                channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing disassembly cache: " + e.getMessage());
+        }
+
+        channel = null;
+        mapped = null;
+        offsets.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public List<Instruction> disassemble(Module processor, long start, long end) {
+        return disassemble(processor, start, end, null, null);
+    }
+
+    /**
+     * Disassembles the range [start, end) like Instruction.disassemble, but
+     * serves the result from the cache if the code pages are unchanged. Page
+     * contents are taken from <tt>source</tt> where it covers them. Symbols
+     * of cached instructions are resolved using <tt>symbols</tt>.
+     */
+    public List<Instruction> disassemble(Module processor, long start, long end, ImageCodeSource source,
+            SymbolIndex symbols) {
+        if (Long.compareUnsigned(end + MAX_INSN_SIZE, start) <= 0)
+            return Instruction.disassemble(processor, start, end);
+
+        List<byte[]> pages = pageDigests(processor, start, end + MAX_INSN_SIZE, source);
+        String key = pages != null ? key(processor.getKind(), start, end, pages) : null;
+        if (key == null)
+            return Instruction.disassemble(processor, start, end);
+
+        String text;
+        synchronized (this) {
+            text = entries.get(key);
+            if (text == null && (text = load(key)) != null)
+                entries.put(key, text);
+        }
+
+        if (text != null)
+            return denormalize(text, start, symbols);
+
+        List<Instruction> block = Instruction.disassemble(processor, start, end);
+        text = normalize(block, start);
+        if (text != null && !block.isEmpty()) {
+            synchronized (this) {
+                entries.put(key, text);
+                store(key, text);
+            }
+        }
+
+        return block;
+    }
+
+}
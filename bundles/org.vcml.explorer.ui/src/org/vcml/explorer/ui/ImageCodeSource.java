@@ -0,0 +1,147 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.explorer.ui;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.vcml.session.ElfFile;
+import org.vcml.session.Module;
+import org.vcml.session.ReplyParser;
+import org.vcml.session.SessionException;
+
+/**
+ * Serves code bytes of a processor from the read-only loadable segments of
+ * its attached ELF image instead of the simulator. Since the target may
+ * modify its own code, {@link #verify()} compares a random sample of the
+ * image against the simulator and disables the source on mismatch.
+ */
+public class ImageCodeSource {
+
+    public static final int VERIFY_SIZE = 256;
+
+    private Module processor;
+
+    private ElfFile image;
+
+    private List<ElfFile.Segment> segments = new ArrayList<ElfFile.Segment>();
+
+    private long total = 0;
+
+    private boolean diverged = false;
+
+    private long mismatch = -1;
+
+    private Random random = new Random();
+
+    public ImageCodeSource(Module processor, ElfFile image) {
+        this.processor = processor;
+        this.image = image;
+
+        for (ElfFile.Segment segment : image.getSegments()) {
+            if (segment.isLoadable() && !segment.isWritable() && segment.getFileSize() > 0) {
+                segments.add(segment);
+                total += segment.getFileSize();
+            }
+        }
+    }
+
+    public ElfFile getImage() {
+        return image;
+    }
+
+    public boolean isValid() {
+        return !diverged && total > 0;
+    }
+
+    public long getMismatch() {
+        return mismatch;
+    }
+
+    public void setProcessor(Module processor) {
+        this.processor = processor;
+    }
+
+    /**
+     * Returns the bytes in [start, end) if they are entirely covered by a
+     * read-only segment of the image, or <tt>null</tt> otherwise.
+     */
+    public byte[] read(long start, long end) {
+        if (!isValid())
+            return null;
+
+        for (ElfFile.Segment segment : segments) {
+            if (segment.contains(start, end - start)) {
+                byte[] code = new byte[(int) (end - start)];
+                return image.read(start, code, 0, code.length) ? code : null;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Compares a randomly chosen range of the read-only segments against the
+     * simulator. On mismatch the source stops serving reads.
+     * @return false if the simulator diverged from the image
+     */
+    public boolean verify() {
+        if (!isValid() || processor.findCommand(DisassemblyCache.CMD_READ) == null)
+            return !diverged;
+
+        long pick = (long) (random.nextDouble() * total);
+        for (ElfFile.Segment segment : segments) {
+            if (pick >= segment.getFileSize()) {
+                pick -= segment.getFileSize();
+                continue;
+            }
+
+            long size = Math.min(VERIFY_SIZE, segment.getFileSize());
+            long start = segment.getVirtualAddress() + Math.min(pick, segment.getFileSize() - size);
+            byte[] local = read(start, start + size);
+            byte[] remote = new byte[(int) size];
+
+            try {
+                String arg0 = Long.toUnsignedString(start);
+                String arg1 = Long.toUnsignedString(start + size);
+                String result = processor.execute(DisassemblyCache.CMD_READ, arg0, arg1);
+                if (ReplyParser.parseBytes(result, remote) != remote.length)
+                    return true; // not readable right now, try again later
+            } catch (SessionException e) {
+                return true;
+            }
+
+            if (!Arrays.equals(local, remote)) {
+                diverged = true;
+                mismatch = start;
+                System.err.println(String.format("Code at 0x%x differs from %s, no longer serving code from image",
+                        start, image));
+            }
+
+            break;
+        }
+
+        return !diverged;
+    }
+
+}
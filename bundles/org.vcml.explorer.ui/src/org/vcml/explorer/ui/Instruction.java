@@ -19,31 +19,17 @@
 
 package org.vcml.explorer.ui;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.vcml.session.Module;
+import org.vcml.session.ReplyParser;
 import org.vcml.session.SessionException;
 
 public class Instruction {
 
     public static final String CMD_DISASSEMBLE = "disas";
 
-    public static final String REGEX_HEX = "[0-9a-fA-F]*";
-
-    public static final String REGEX_SYM = "\\[.*\\]";
-
-    public static final String REGEX_DISAS = ".*";
-
-    public static final String REGEX_VADDR = "[0-9a-fA-F]+";
-
-    public static final String REGEX_PADDR = "[0-9a-fA-F]*";
-
-    public static final String REGEX_INSN = "\\[[[0-9a-fA-F]{2}\\s]*[[0-9a-fA-F]{2}]{1}\\]";
-
-    public static final String REGEX = "\\s[>|\\s]\\s(" + REGEX_SYM + ")?\\s?(" + REGEX_VADDR + ")?\\s?(" + REGEX_PADDR
-            + "):\\s(" + REGEX_INSN + ")\\s(" + REGEX_DISAS + ")?";
-
     private long physAddress;
 
     private long virtAddress;
@@ -56,8 +42,12 @@ public class Instruction {
 
     private String symbol;
 
+    private boolean valid;
+
+    private boolean translated = true;
+
     private static String getDescription(long address, Module processor) {
-        try { // ToDo: do not run the command every time, better use caching!
+        try { // single instruction fallback, use disassemble() for ranges
             String arg0 = Long.toUnsignedString(address);
             String arg1 = Long.toUnsignedString(address + 1);
             String result = processor.execute(CMD_DISASSEMBLE, arg0, arg1);
@@ -67,10 +57,58 @@ public class Instruction {
         }
     }
 
+    /**
+     * Parses the reply of a <tt>disas</tt> command for the range starting at
+     * <tt>start</tt>, dropping lines that do not describe an instruction.
+     */
+    public static List<Instruction> parse(String result, long start) {
+        List<Instruction> block = new ArrayList<Instruction>();
+
+        long address = start;
+        ReplyParser.Disassembly scratch = new ReplyParser.Disassembly();
+        for (String line : result.split("\n")) {
+            Instruction insn = new Instruction(address, line, scratch);
+            if (!insn.isValid())
+                continue;
+
+            block.add(insn);
+            address = insn.getAddress() + insn.getSize();
+        }
+
+        return block;
+    }
+
+    /**
+     * Disassembles all instructions in the range [start, end) using a single
+     * command. The last instruction may extend beyond <tt>end</tt>.
+     * @return instructions in ascending order, empty if disassembly failed
+     */
+    public static List<Instruction> disassemble(Module processor, long start, long end) {
+        try {
+            return parse(fetch(processor, start, end), start);
+        } catch (SessionException e) {
+            return new ArrayList<Instruction>(); // caller falls back to single instructions
+        }
+    }
+
+    public static String fetch(Module processor, long start, long end) throws SessionException {
+        String arg0 = Long.toUnsignedString(start);
+        String arg1 = Long.toUnsignedString(end);
+        return processor.execute(CMD_DISASSEMBLE, arg0, arg1);
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
     public long getPhysicalAddress() {
         return physAddress;
     }
 
+    public boolean hasPhysicalAddress() {
+        return translated;
+    }
+
     public long getVirtualAddress() {
         return virtAddress;
     }
@@ -95,56 +133,49 @@ public class Instruction {
         return symbol;
     }
 
-    public Instruction(long address, String description) {
+    private Instruction(long address, String description, ReplyParser.Disassembly parsed) {
         physAddress = address;
         virtAddress = 0;
         instruction = "";
         size = 4;
         disassembly = description;
 
-        if (description.contains("????????")) {
+        if (!ReplyParser.parseDisassembly(description, parsed))
+            return;
+
+        valid = true;
+        symbol = parsed.getSymbol();
+        if (parsed.isUnmapped()) {
             // something went wrong with v->p translation
-            // try to at least get the symbol info
             virtAddress = address;
             disassembly = "<page unmapped>";
-
-            Pattern pattern = Pattern.compile("(" + REGEX_SYM + ")");
-            Matcher matcher = pattern.matcher(description);
-            if ((matcher.find()) && (matcher.groupCount() == 1))
-                symbol = matcher.group(1);
-
             return;
         }
 
-        Pattern pattern = Pattern.compile(REGEX);
-        Matcher matcher = pattern.matcher(description);
-
-        if (!matcher.find())
-            return;
+        physAddress = parsed.getPhysicalAddress();
+        virtAddress = parsed.getVirtualAddress();
+        instruction = parsed.getInstruction();
+        size = parsed.getSize();
+        disassembly = parsed.getText();
+    }
 
-        if (matcher.groupCount() != 5)
-            return;
+    public Instruction(long address, String description) {
+        this(address, description, new ReplyParser.Disassembly());
+    }
 
-        try {
-            String sym = matcher.group(1);
-            String virt = matcher.group(2);
-            String phys = matcher.group(3);
-            String insn = matcher.group(4);
-            String disas = matcher.group(5);
-
-            if (phys == null || phys.isEmpty() || phys == "")
-                phys = virt;
-
-            symbol = (sym != null) ? sym : "";
-            physAddress = Long.parseUnsignedLong(phys, 16);
-            virtAddress = (virt != null) ? Long.parseUnsignedLong(virt, 16) : physAddress;
-            instruction = insn;
-            size = (insn.length() - 1) / 3;
-            disassembly = (disas != null) ? disas.trim() : "--";
-
-        } catch (NumberFormatException e) {
-            disassembly = e.getMessage();
-        }
+    /**
+     * Creates a valid instruction at virtual <tt>address</tt> whose physical
+     * address is unknown, used for instructions served from a cache.
+     */
+    Instruction(long address, String instruction, long size, String disassembly, String symbol) {
+        this.physAddress = address;
+        this.virtAddress = address;
+        this.instruction = instruction;
+        this.size = size;
+        this.disassembly = disassembly;
+        this.symbol = symbol;
+        this.valid = true;
+        this.translated = false;
     }
 
     public Instruction(long address, Module processor) {
@@ -0,0 +1,146 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.explorer.ui;
+
+import java.util.Arrays;
+
+/**
+ * Sorted list of instruction start addresses that maps table rows to
+ * addresses in O(1) and addresses to rows in O(log n). Addresses are compared
+ * unsigned. Storage grows in both directions, so prepending a block when
+ * scrolling up does not require recomputing the existing boundaries. Once
+ * the last instruction of the address space has been appended, the index is
+ * closed and does not grow further at the end.
+ */
+public class InstructionIndex {
+
+    public static final int INITIAL_CAPACITY = 512;
+
+    private long[] addresses = new long[INITIAL_CAPACITY];
+
+    private int head = INITIAL_CAPACITY / 2;
+
+    private int tail = INITIAL_CAPACITY / 2;
+
+    private boolean closed = false;
+
+    private void grow(int front, int back) {
+        int size = size();
+        int capacity = Math.max(addresses.length * 2, size + front + back);
+        long[] grown = new long[capacity];
+        int newHead = front + (capacity - size - front - back) / 2;
+        System.arraycopy(addresses, head, grown, newHead, size);
+        addresses = grown;
+        head = newHead;
+        tail = newHead + size;
+    }
+
+    public int size() {
+        return tail - head;
+    }
+
+    public boolean isEmpty() {
+        return tail == head;
+    }
+
+    public long get(int idx) {
+        if (idx < 0 || idx >= size())
+            throw new IndexOutOfBoundsException("index " + idx + " out of bounds for size " + size());
+        return addresses[head + idx];
+    }
+
+    public long first() {
+        return get(0);
+    }
+
+    public long last() {
+        return get(size() - 1);
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Marks the last address as the final instruction of the address space.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    public void clear() {
+        head = tail = addresses.length / 2;
+        closed = false;
+    }
+
+    public void append(long address) {
+        if (closed)
+            throw new IllegalStateException(String.format("cannot append 0x%x to closed index", address));
+        if (!isEmpty() && Long.compareUnsigned(address, last()) <= 0)
+            throw new IllegalArgumentException(String.format("address 0x%x not beyond last", address));
+        if (tail == addresses.length)
+            grow(0, 1);
+        addresses[tail++] = address;
+    }
+
+    /**
+     * Prepends <tt>count</tt> ascending addresses, all of which must lie
+     * below the current first address.
+     */
+    public void prepend(long[] block, int count) {
+        if (count == 0)
+            return;
+        if (!isEmpty() && Long.compareUnsigned(block[count - 1], first()) >= 0)
+            throw new IllegalArgumentException(String.format("address 0x%x not below first", block[count - 1]));
+        if (head < count)
+            grow(count, 0);
+        head -= count;
+        System.arraycopy(block, 0, addresses, head, count);
+    }
+
+    /**
+     * Returns the row of the instruction starting at <tt>address</tt>. If no
+     * instruction starts there, returns <tt>-(row + 1)</tt>, where <tt>row</tt>
+     * is the first instruction starting beyond <tt>address</tt>.
+     */
+    public int search(long address) {
+        int lo = head;
+        int hi = tail - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = Long.compareUnsigned(addresses[mid], address);
+            if (cmp < 0)
+                lo = mid + 1;
+            else if (cmp > 0)
+                hi = mid - 1;
+            else
+                return mid - head;
+        }
+
+        return -(lo - head + 1);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(Arrays.copyOfRange(addresses, head, tail));
+    }
+
+}
@@ -0,0 +1,208 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.explorer.ui;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.vcml.session.Module;
+import org.vcml.session.Protocol;
+import org.vcml.session.ReplyParser;
+import org.vcml.session.Response;
+import org.vcml.session.SessionException;
+
+public class MemoryLoader {
+
+    public static final String CMD_WRITE = "write";
+
+    public static final int CHUNK_SIZE = 4096;
+
+    public static final int PIPELINE_DEPTH = 16;
+
+    public static final int VERIFY_SAMPLES = 16;
+
+    public static final int VERIFY_SIZE = MemoryRow.SIZE;
+
+    private static final String[] HEX = new String[256];
+
+    static {
+        for (int i = 0; i < HEX.length; i++)
+            HEX[i] = String.format("%02x", i);
+    }
+
+    private Module memory;
+
+    private File file;
+
+    private long offset;
+
+    private long size;
+
+    public static boolean canLoad(Module memory) {
+        return memory != null && memory.findCommand(CMD_WRITE) != null;
+    }
+
+    public Module getMemory() {
+        return memory;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public MemoryLoader(Module memory, File file, long offset) {
+        this.memory = memory;
+        this.file = file;
+        this.offset = offset;
+        this.size = file.length();
+    }
+
+    private Protocol getProtocol() throws SessionException {
+        Protocol protocol = memory.getSession().getProtocol();
+        if (protocol == null)
+            throw new SessionException("Session " + memory.getSession() + " not connected");
+        return protocol;
+    }
+
+    private MappedByteBuffer map(FileChannel channel) throws IOException {
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("File " + file + " too large (" + size + " bytes)");
+        return channel.map(MapMode.READ_ONLY, 0, size);
+    }
+
+    private String[] buildWrite(MappedByteBuffer buffer, int pos, int len) {
+        String[] args = new String[4 + len];
+        args[0] = Protocol.EXEC;
+        args[1] = memory.getName();
+        args[2] = CMD_WRITE;
+        args[3] = Long.toString(offset + pos);
+        for (int i = 0; i < len; i++)
+            args[4 + i] = HEX[buffer.get(pos + i) & 0xff];
+        return args;
+    }
+
+    private void flush(Protocol protocol, List<String[]> batch) throws SessionException {
+        for (Response resp : protocol.pipeline(batch)) {
+            if (resp.isError())
+                throw new SessionException("Failed to write " + memory.getName() + ": " + resp.getValue(0));
+        }
+
+        batch.clear();
+    }
+
+    /**
+     * Writes the file contents to the memory, split into chunks of at most
+     * {@link #CHUNK_SIZE} bytes which are issued in batches of
+     * {@link #PIPELINE_DEPTH} commands.
+     * @return <tt>false</tt> if loading was canceled via <tt>monitor</tt>
+     */
+    public boolean load(IProgressMonitor monitor) throws IOException, SessionException {
+        Protocol protocol = getProtocol();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = map(channel);
+            int chunks = (int) ((size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+            monitor.beginTask("Loading " + file.getName() + " into " + memory.getName(), chunks);
+
+            List<String[]> batch = new ArrayList<String[]>(PIPELINE_DEPTH);
+            for (int pos = 0; pos < size; pos += CHUNK_SIZE) {
+                if (monitor.isCanceled())
+                    return false;
+
+                batch.add(buildWrite(buffer, pos, (int) Math.min(CHUNK_SIZE, size - pos)));
+                if (batch.size() == PIPELINE_DEPTH) {
+                    flush(protocol, batch);
+                    monitor.worked(PIPELINE_DEPTH);
+                }
+            }
+
+            if (!batch.isEmpty())
+                flush(protocol, batch);
+            return true;
+        } finally {
+            monitor.done();
+        }
+    }
+
+    /**
+     * Reads back {@link #VERIFY_SAMPLES} randomly chosen ranges, including the
+     * first and the last bytes of the file, and compares them with the file.
+     * @return memory offset of the first mismatching sample or -1 if all match
+     */
+    public long verify() throws IOException, SessionException {
+        if (size == 0)
+            return -1;
+
+        Protocol protocol = getProtocol();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = map(channel);
+            Random random = new Random();
+
+            int[] samples = new int[(int) Math.min(VERIFY_SAMPLES, (size + VERIFY_SIZE - 1) / VERIFY_SIZE)];
+            samples[0] = 0;
+            samples[samples.length - 1] = (int) Math.max(0, size - VERIFY_SIZE);
+            for (int i = 1; i < samples.length - 1; i++)
+                samples[i] = random.nextInt((int) size);
+
+            List<String[]> batch = new ArrayList<String[]>(samples.length);
+            for (int pos : samples) {
+                int len = (int) Math.min(VERIFY_SIZE, size - pos);
+                batch.add(new String[] { Protocol.EXEC, memory.getName(), MemorySnapshot.CMD_SHOW,
+                        Long.toString(offset + pos), Long.toString(offset + pos + len) });
+            }
+
+            Response[] responses = protocol.pipeline(batch);
+            for (int i = 0; i < samples.length; i++) {
+                int len = (int) Math.min(VERIFY_SIZE, size - samples[i]);
+                byte[] expected = new byte[len];
+                byte[] actual = new byte[len];
+                for (int j = 0; j < len; j++)
+                    expected[j] = buffer.get(samples[i] + j);
+
+                if (responses[i].isError())
+                    return offset + samples[i];
+
+                int count = ReplyParser.parseBytes(responses[i].toString(), actual);
+                if (count != len || !Arrays.equals(expected, actual))
+                    return offset + samples[i];
+            }
+
+            return -1;
+        }
+    }
+
+}
@@ -19,8 +19,6 @@
 
 package org.vcml.explorer.ui;
 
-import org.vcml.session.Module;
-
 public class MemoryRow {
 
     public static final int SIZE = 16;
@@ -31,10 +29,16 @@ public class MemoryRow {
 
     private byte[] bytes = new byte[SIZE];
 
+    private int changed = 0;
+
     public boolean isError() {
         return error;
     }
 
+    public boolean isChanged(int idx) {
+        return (changed & (1 << idx)) != 0;
+    }
+
     public int getAddress() {
         return address;
     }
@@ -43,25 +47,26 @@ public class MemoryRow {
         return bytes;
     }
 
-    public MemoryRow(int address, Module module) {
+    public MemoryRow(int address, MemorySnapshot snapshot, MemorySnapshot previous) {
         this.address = address;
 
-        try {
-            String arg0 = Integer.toString(address);
-            String arg1 = Integer.toString(address + SIZE);
-            String result = module.execute("show", arg0, arg1);
-            String clean = result.substring(result.indexOf(':') + 1);
-            String[] values = clean.split(" ");
-
-            int idx = 0;
-            for (int i = 0; i < values.length; i++)
-                if (values[i].length() == 2)
-                    bytes[idx++] = (byte) Integer.parseInt(values[i], 16);
-        } catch (Exception e) {
+        if (!snapshot.read(address, bytes)) {
             for (int i = 0; i < SIZE; i++)
                 bytes[i] = (byte) 0xee;
             error = true;
+            return;
         }
+
+        if (previous == null || snapshot.isPageUnchanged(address, previous))
+            return;
+
+        byte[] old = new byte[SIZE];
+        if (!previous.lookup(address, old))
+            return;
+
+        for (int i = 0; i < SIZE; i++)
+            if (old[i] != bytes[i])
+                changed |= 1 << i;
     }
 
     @Override
@@ -78,7 +83,7 @@ public class MemoryRow {
             return false;
 
         MemoryRow row = (MemoryRow) other;
-        if (row.getAddress() != address)
+        if (row.getAddress() != address || row.changed != changed || row.error != error)
             return false;
 
         for (int i = 0; i < SIZE; i++) {
@@ -0,0 +1,260 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.explorer.ui;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.vcml.session.Module;
+import org.vcml.session.ReplyParser;
+import org.vcml.session.Session;
+
+public class MemorySnapshot {
+
+    public static final int PAGE_SIZE = 4096;
+
+    public static final String CMD_SHOW = "show";
+
+    public static class Region {
+
+        private long start;
+
+        private long end;
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        public long getSize() {
+            return end - start;
+        }
+
+        public Region(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("0x%08x..0x%08x (%d bytes)", start, end - 1, getSize());
+        }
+
+    }
+
+    private static class Page {
+
+        private byte[] data;
+
+        private long hash;
+
+        private Page(byte[] data) {
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            this.data = data;
+            this.hash = crc.getValue() | ((long) data.length << 32);
+        }
+
+    }
+
+    private Module memory;
+
+    private LocalTime time;
+
+    private long deltaCycle;
+
+    private MemorySnapshot older;
+
+    private TreeMap<Long, Page> pages = new TreeMap<Long, Page>();
+
+    private static long pageOf(long address) {
+        return address & ~(long) (PAGE_SIZE - 1);
+    }
+
+    private Page fetch(long address) {
+        byte[] data = new byte[PAGE_SIZE];
+        int valid;
+        try {
+            String arg0 = Long.toString(address);
+            String arg1 = Long.toString(address + PAGE_SIZE);
+            valid = ReplyParser.parseBytes(memory.execute(CMD_SHOW, arg0, arg1), data);
+        } catch (Exception e) {
+            valid = 0;
+        }
+
+        Page page = new Page(valid < PAGE_SIZE ? Arrays.copyOf(data, valid) : data);
+        synchronized (this) {
+            Page seen = pages.get(address);
+            if (seen != null)
+                return seen;
+
+            Page prev = older != null ? older.get(address) : null;
+            if (prev != null && prev.hash == page.hash && Arrays.equals(prev.data, page.data))
+                page = prev; // share unchanged pages with the older snapshot
+
+            pages.put(address, page);
+            return page;
+        }
+    }
+
+    private synchronized Page get(long base) {
+        return pages.get(base);
+    }
+
+    public Module getMemory() {
+        return memory;
+    }
+
+    public synchronized int getPageCount() {
+        return pages.size();
+    }
+
+    public boolean isCurrent(Session session) {
+        return time.equals(session.getTime()) && deltaCycle == session.getDeltaCycle();
+    }
+
+    public MemorySnapshot(Module memory, Session session) {
+        this(memory, session, null);
+    }
+
+    /**
+     * Creates an empty snapshot that shares the storage of pages whose
+     * content did not change since <tt>older</tt>. Only one level of
+     * snapshots is kept alive this way.
+     */
+    public MemorySnapshot(Module memory, Session session, MemorySnapshot older) {
+        this.memory = memory;
+        this.time = session.getTime();
+        this.deltaCycle = session.getDeltaCycle();
+        this.older = older;
+        if (older != null) {
+            synchronized (older) {
+                older.older = null;
+            }
+        }
+    }
+
+    /**
+     * Copies memory contents starting at <tt>address</tt> into <tt>buffer</tt>,
+     * reading the enclosing page from the session if it has not been seen yet.
+     * The requested range must not cross a page boundary.
+     * @return <tt>true</tt> if all requested bytes could be read
+     */
+    public boolean read(long address, byte[] buffer) {
+        long base = pageOf(address);
+        Page page = get(base);
+        if (page == null)
+            page = fetch(base);
+
+        int offset = (int) (address - base);
+        if (offset + buffer.length > page.data.length)
+            return false;
+
+        System.arraycopy(page.data, offset, buffer, 0, buffer.length);
+        return true;
+    }
+
+    /**
+     * Same as {@link #read(long, byte[])}, but never contacts the session.
+     */
+    public boolean lookup(long address, byte[] buffer) {
+        long base = pageOf(address);
+        Page page = get(base);
+        if (page == null)
+            return false;
+
+        int offset = (int) (address - base);
+        if (offset + buffer.length > page.data.length)
+            return false;
+
+        System.arraycopy(page.data, offset, buffer, 0, buffer.length);
+        return true;
+    }
+
+    /**
+     * Returns <tt>true</tt> if both snapshots have seen the page containing
+     * <tt>address</tt> and their content hashes match.
+     */
+    public boolean isPageUnchanged(long address, MemorySnapshot other) {
+        long base = pageOf(address);
+        Page page = get(base);
+        Page prev = other.get(base);
+        return page != null && prev != null && page.hash == prev.hash;
+    }
+
+    /**
+     * Computes all regions that differ between <tt>older</tt> and this snapshot.
+     * Pages seen by <tt>older</tt> but not yet by this snapshot are read from the
+     * session first, so this should not be called from the UI thread. Pages with
+     * matching content hashes are skipped.
+     */
+    public List<Region> diff(MemorySnapshot older) {
+        List<Region> regions = new ArrayList<Region>();
+        long start = -1;
+        long end = -1;
+
+        TreeMap<Long, Page> seen;
+        synchronized (older) {
+            seen = new TreeMap<Long, Page>(older.pages);
+        }
+
+        for (Map.Entry<Long, Page> entry : seen.entrySet()) {
+            long base = entry.getKey();
+            Page prev = entry.getValue();
+            Page page = get(base);
+            if (page == null)
+                page = fetch(base);
+
+            if (page.hash == prev.hash)
+                continue;
+
+            int limit = Math.max(page.data.length, prev.data.length);
+            for (int i = 0; i < limit; i++) {
+                boolean changed = i >= page.data.length || i >= prev.data.length || page.data[i] != prev.data[i];
+                if (!changed)
+                    continue;
+
+                long addr = base + i;
+                if (addr != end) {
+                    if (start != -1)
+                        regions.add(new Region(start, end));
+                    start = addr;
+                }
+
+                end = addr + 1;
+            }
+        }
+
+        if (start != -1)
+            regions.add(new Region(start, end));
+
+        return regions;
+    }
+
+}
@@ -0,0 +1,162 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.explorer.ui;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.swt.widgets.Display;
+import org.vcml.explorer.ui.services.ISessionService;
+import org.vcml.session.Module;
+import org.vcml.session.ReplyParser;
+import org.vcml.session.Session;
+import org.vcml.session.SessionException;
+
+/**
+ * Statistical profiler: repeatedly advances the simulation by a fixed
+ * interval and samples the program counters of all given processors with one
+ * pipelined <tt>dump</tt> burst, of which only the PC is parsed. Each sample
+ * also costs one status round trip per poll until the step has finished. The
+ * interval trades resolution against throughput, the poll period trades host
+ * CPU load against latency. Listeners of the session service are told when
+ * sampling starts; the owner refreshes the session once the job is done.
+ */
+public class PcSampler extends Job {
+
+    public static final long DEFAULT_POLL_MILLIS = 1;
+
+    private ISessionService service;
+
+    private Session session;
+
+    private List<Module> processors;
+
+    private int samples;
+
+    private Duration interval;
+
+    private long pollMillis = DEFAULT_POLL_MILLIS;
+
+    private Profile profile;
+
+    private TraceRecorder recorder;
+
+    private void waitForStop(IProgressMonitor monitor) throws SessionException, InterruptedException {
+        session.updateStatus();
+        while (session.isRunning()) {
+            if (monitor.isCanceled()) {
+                session.stopSimulation();
+                return;
+            }
+
+            if (pollMillis > 0)
+                Thread.sleep(pollMillis);
+            session.updateStatus();
+        }
+    }
+
+    public PcSampler(ISessionService service, Session session, List<Module> processors, int samples,
+            Duration interval) {
+        super("Profiling " + session.getName());
+        this.service = service;
+        this.session = session;
+        this.processors = new ArrayList<Module>(processors);
+        this.samples = samples;
+        this.interval = interval;
+
+        String[] cores = new String[processors.size()];
+        for (int i = 0; i < cores.length; i++)
+            cores[i] = processors.get(i).getName();
+
+        profile = new Profile(cores, interval, samples);
+    }
+
+    public Profile getProfile() {
+        return profile;
+    }
+
+    public void setPollMillis(long millis) {
+        pollMillis = millis;
+    }
+
+    /**
+     * Additionally writes every sample to <tt>recorder</tt>, which is closed
+     * when the job finishes.
+     */
+    public void setRecorder(TraceRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    private void closeRecorder() {
+        if (recorder == null)
+            return;
+
+        try {
+            recorder.close();
+        } catch (IOException e) {
+            System.err.println("cannot close trace: " + e.getMessage());
+        }
+    }
+
+    @Override
+    protected IStatus run(IProgressMonitor monitor) {
+        monitor.beginTask(getName(), samples);
+        long[] pcs = new long[processors.size()];
+        Profile.setLatest(session, profile);
+
+        try {
+            for (int i = 0; i < samples && !monitor.isCanceled(); i++) {
+                session.stepSimulation(interval);
+                if (i == 0)
+                    Display.getDefault().asyncExec(() -> service.sessionChanged(session));
+                waitForStop(monitor);
+
+                String[] replies = session.execute(processors, RegisterFile.CMD_DUMP);
+                for (int core = 0; core < pcs.length; core++) {
+                    pcs[core] = replies[core] == null ? 0
+                            : ReplyParser.findRegister(replies[core], RegisterFile.PROGRAM_COUNTER, 0);
+                }
+                profile.add(pcs);
+                if (recorder != null)
+                    recorder.record(session.getTime().toNanoOfDay(), pcs);
+                monitor.worked(1);
+            }
+        } catch (SessionException e) {
+            return new Status(IStatus.ERROR, "org.vcml.explorer.ui", e.getMessage(), e);
+        } catch (IOException e) {
+            return new Status(IStatus.ERROR, "org.vcml.explorer.ui", "cannot write trace: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            return Status.CANCEL_STATUS;
+        } finally {
+            closeRecorder();
+            monitor.done();
+        }
+
+        return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+    }
+
+}
@@ -0,0 +1,188 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.explorer.ui;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import org.vcml.session.Session;
+
+/**
+ * Program counter samples of all processors of a session. Samples are stored
+ * interleaved in a single primitive buffer; per-address histograms are built
+ * on first use by sorting the samples of a processor.
+ */
+public class Profile {
+
+    public static class Entry {
+
+        private String symbol;
+
+        private long address;
+
+        private int hits;
+
+        public String getSymbol() {
+            return symbol;
+        }
+
+        public long getAddress() {
+            return address;
+        }
+
+        public int getHits() {
+            return hits;
+        }
+
+        private Entry(String symbol, long address, int hits) {
+            this.symbol = symbol;
+            this.address = address;
+            this.hits = hits;
+        }
+
+    }
+
+    private static HashMap<String, Profile> profiles = new HashMap<String, Profile>();
+
+    private String[] cores;
+
+    private Duration interval;
+
+    private long[] samples;
+
+    private int count = 0;
+
+    private long[][] addresses;
+
+    private int[][] hits;
+
+    public static synchronized Profile getLatest(Session session) {
+        return profiles.get(session.getURI());
+    }
+
+    public static synchronized void setLatest(Session session, Profile profile) {
+        profiles.put(session.getURI(), profile);
+    }
+
+    private void buildHistogram(int core) {
+        long[] sorted = new long[count];
+        for (int i = 0; i < count; i++)
+            sorted[i] = samples[i * cores.length + core];
+        Arrays.sort(sorted);
+
+        int unique = 0;
+        int[] counts = new int[count];
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || sorted[i] != sorted[unique - 1])
+                sorted[unique++] = sorted[i];
+            counts[unique - 1]++;
+        }
+
+        addresses[core] = Arrays.copyOf(sorted, unique);
+        hits[core] = Arrays.copyOf(counts, unique);
+    }
+
+    public Profile(String[] cores, Duration interval, int capacity) {
+        this.cores = cores;
+        this.interval = interval;
+        this.samples = new long[Math.max(capacity, 1) * cores.length];
+        this.addresses = new long[cores.length][];
+        this.hits = new int[cores.length][];
+    }
+
+    public int getCoreCount() {
+        return cores.length;
+    }
+
+    public String getCore(int core) {
+        return cores[core];
+    }
+
+    public int indexOf(String core) {
+        for (int i = 0; i < cores.length; i++)
+            if (cores[i].equals(core))
+                return i;
+        return -1;
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+
+    public synchronized int getSampleCount() {
+        return count;
+    }
+
+    /**
+     * Adds one sample, consisting of the program counter of every core.
+     */
+    public synchronized void add(long[] pcs) {
+        if ((count + 1) * cores.length > samples.length)
+            samples = Arrays.copyOf(samples, samples.length * 2);
+        System.arraycopy(pcs, 0, samples, count * cores.length, cores.length);
+        count++;
+
+        Arrays.fill(addresses, null);
+        Arrays.fill(hits, null);
+    }
+
+    public synchronized int getHits(int core, long address) {
+        if (addresses[core] == null)
+            buildHistogram(core);
+
+        int idx = Arrays.binarySearch(addresses[core], address);
+        return idx < 0 ? 0 : hits[core][idx];
+    }
+
+    /**
+     * Aggregates the samples of <tt>core</tt> per symbol, ordered by
+     * descending hit count. Addresses below the first symbol are reported
+     * individually.
+     */
+    public synchronized List<Entry> getFlatProfile(int core, SymbolIndex symbols) {
+        if (addresses[core] == null)
+            buildHistogram(core);
+
+        long[] addrs = addresses[core];
+        int[] counts = hits[core];
+        int[] perSymbol = new int[symbols.size()];
+        List<Entry> entries = new ArrayList<Entry>();
+
+        for (int i = 0; i < addrs.length; i++) {
+            int sym = symbols.floor(addrs[i]);
+            if (sym < 0)
+                entries.add(new Entry(null, addrs[i], counts[i]));
+            else
+                perSymbol[sym] += counts[i];
+        }
+
+        for (int i = 0; i < perSymbol.length; i++)
+            if (perSymbol[i] > 0)
+                entries.add(new Entry(symbols.getName(i), symbols.getAddress(i), perSymbol[i]));
+
+        entries.sort((a, b) -> Integer.compare(b.hits, a.hits));
+        return entries;
+    }
+
+}
@@ -0,0 +1,176 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.explorer.ui;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import org.vcml.session.Module;
+import org.vcml.session.ReplyParser;
+import org.vcml.session.Session;
+import org.vcml.session.SessionException;
+
+/**
+ * Register values of a processor as reported by its <tt>dump</tt> command.
+ * The reply is parsed once per simulation stop into primitive arrays, and
+ * the values of the previous stop are kept to tell which registers changed.
+ */
+public class RegisterFile {
+
+    public static final String CMD_DUMP = "dump";
+
+    public static final String PROGRAM_COUNTER = "PC";
+
+    private Module processor;
+
+    private LocalTime time = null;
+
+    private long deltaCycle = -1;
+
+    private int count = 0;
+
+    private String[] names = new String[0];
+
+    private long[] values = new long[0];
+
+    private long[] previous = new long[0];
+
+    private boolean[] known = new boolean[0];
+
+    private HashMap<String, Integer> indices = new HashMap<String, Integer>();
+
+    /**
+     * Fetches the registers of all <tt>files</tt> that are not up to date
+     * with one pipelined batch.
+     */
+    public static void updateAll(Session session, List<RegisterFile> files) throws SessionException {
+        List<RegisterFile> stale = new ArrayList<RegisterFile>();
+        List<Module> processors = new ArrayList<Module>();
+        for (RegisterFile file : files) {
+            if (!file.isCurrent(session)) {
+                stale.add(file);
+                processors.add(file.processor);
+            }
+        }
+
+        if (stale.isEmpty())
+            return;
+
+        String[] replies = session.execute(processors, CMD_DUMP);
+        for (int i = 0; i < replies.length; i++)
+            if (replies[i] != null)
+                stale.get(i).parse(replies[i], session);
+    }
+
+    private void grow() {
+        int capacity = Math.max(16, names.length * 2);
+        names = Arrays.copyOf(names, capacity);
+        values = Arrays.copyOf(values, capacity);
+        previous = Arrays.copyOf(previous, capacity);
+        known = Arrays.copyOf(known, capacity);
+    }
+
+    private void parse(String reply, Session session) {
+        System.arraycopy(values, 0, previous, 0, count);
+        Arrays.fill(known, 0, count, time != null);
+
+        ReplyParser.parseRegisters(reply, (name, value) -> {
+            Integer idx = indices.get(name);
+            if (idx == null) {
+                if (count == names.length)
+                    grow();
+                idx = count++;
+                names[idx] = name;
+                indices.put(name, idx);
+            }
+
+            values[idx] = value;
+        });
+
+        time = session.getTime();
+        deltaCycle = session.getDeltaCycle();
+    }
+
+    public RegisterFile(Module processor) {
+        this.processor = processor;
+    }
+
+    public Module getProcessor() {
+        return processor;
+    }
+
+    public void setProcessor(Module processor) {
+        if (this.processor != processor)
+            time = null;
+        this.processor = processor;
+    }
+
+    public boolean isCurrent(Session session) {
+        return time != null && time.equals(session.getTime()) && deltaCycle == session.getDeltaCycle();
+    }
+
+    /**
+     * Fetches the registers unless they are up to date with the current
+     * simulation stop.
+     */
+    public void update(Session session) throws SessionException {
+        if (!isCurrent(session))
+            parse(processor.execute(CMD_DUMP), session);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public String getName(int idx) {
+        return names[idx];
+    }
+
+    public long getValue(int idx) {
+        return values[idx];
+    }
+
+    public long getPrevious(int idx) {
+        return previous[idx];
+    }
+
+    public boolean isChanged(int idx) {
+        return known[idx] && values[idx] != previous[idx];
+    }
+
+    public int indexOf(String name) {
+        Integer idx = indices.get(name);
+        return idx != null ? idx : -1;
+    }
+
+    public long getValue(String name, long fallback) {
+        int idx = indexOf(name);
+        return idx < 0 ? fallback : values[idx];
+    }
+
+    public long getProgramCounter() {
+        return getValue(PROGRAM_COUNTER, 0);
+    }
+
+}
@@ -20,36 +20,26 @@
 package org.vcml.explorer.ui;
 
 import java.util.ArrayList;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+import org.vcml.session.ElfFile;
 import org.vcml.session.Module;
+import org.vcml.session.ReplyParser;
 import org.vcml.session.SessionException;
 
 public class Symbol {
 
     public static final String CMD_LSYM = "lsym";
 
-    // F c03c9de0 xprt_load_transport
-    public static final String REGEX = "\\s([0-9a-fA-F]{16})\\s(\\w*)";
-
-    private static Symbol[] findSymbols(Module module, String prefix) {
+    private static Symbol[] findSymbols(Module module, boolean functions, boolean objects) {
         ArrayList<Symbol> symbols = new ArrayList<Symbol>();
-        Pattern pattern = Pattern.compile(prefix + REGEX);
 
         try {
             String response = module.execute(CMD_LSYM);
-            String[] lines = response.split("\n");
-            for (String line : lines) {
-                Matcher matcher = pattern.matcher(line);
-
-                if (!matcher.find() || matcher.groupCount() != 2)
-                    continue;
-
-                long address = Long.parseUnsignedLong(matcher.group(1), 16);
-                String name = matcher.group(2);
-                symbols.add(new Symbol(name, address, line.startsWith("F")));
-            }
+            ReplyParser.parseSymbols(response, (name, address, size, type) -> {
+                boolean func = type == ElfFile.STT_FUNC;
+                if (func ? functions : objects)
+                    symbols.add(new Symbol(name, address, func));
+            });
         } catch (SessionException e) {
             // ignore
         }
@@ -59,15 +49,15 @@ public class Symbol {
     }
 
     public static Symbol[] findSymbols(Module module) {
-        return findSymbols(module, "[F|O]");
+        return findSymbols(module, true, true);
     }
 
     public static Symbol[] findObjects(Module module) {
-        return findSymbols(module, "[O]");
+        return findSymbols(module, false, true);
     }
 
     public static Symbol[] findFunctions(Module module) {
-        return findSymbols(module, "[F]");
+        return findSymbols(module, true, false);
     }
 
     private String name;
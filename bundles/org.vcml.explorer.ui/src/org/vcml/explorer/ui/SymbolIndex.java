@@ -0,0 +1,184 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.explorer.ui;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Immutable symbol table stored in parallel arrays sorted by (unsigned)
+ * address. Supports finding the symbol containing an address, looking up
+ * symbols by name and listing the first names matching a given prefix.
+ */
+public class SymbolIndex {
+
+    public static final SymbolIndex EMPTY = new SymbolIndex(new Symbol[0]);
+
+    private long[] addresses;
+
+    private String[] names;
+
+    private boolean[] functions;
+
+    private int[] byName;
+
+    private HashMap<String, Integer> lookup;
+
+    private int lowerBound(String prefix) {
+        int lo = 0;
+        int hi = byName.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (String.CASE_INSENSITIVE_ORDER.compare(names[byName[mid]], prefix) < 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+
+        return lo;
+    }
+
+    private static String[] namesOf(Symbol[] symbols) {
+        String[] names = new String[symbols.length];
+        for (int i = 0; i < symbols.length; i++)
+            names[i] = symbols[i].getName();
+        return names;
+    }
+
+    private static long[] addressesOf(Symbol[] symbols) {
+        long[] addresses = new long[symbols.length];
+        for (int i = 0; i < symbols.length; i++)
+            addresses[i] = symbols[i].getAddress();
+        return addresses;
+    }
+
+    private static boolean[] functionsOf(Symbol[] symbols) {
+        boolean[] functions = new boolean[symbols.length];
+        for (int i = 0; i < symbols.length; i++)
+            functions[i] = symbols[i].isFunction();
+        return functions;
+    }
+
+    public SymbolIndex(Symbol[] symbols) {
+        this(namesOf(symbols), addressesOf(symbols), functionsOf(symbols), symbols.length);
+    }
+
+    /**
+     * Builds an index from the first <tt>count</tt> entries of the given
+     * arrays, which may be unsorted. The arrays are not retained.
+     */
+    public SymbolIndex(String[] names, long[] addresses, boolean[] functions, int count) {
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++)
+            order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compareUnsigned(addresses[a], addresses[b]));
+
+        this.addresses = new long[count];
+        this.names = new String[count];
+        this.functions = new boolean[count];
+        lookup = new HashMap<String, Integer>(count * 2);
+        for (int i = 0; i < count; i++) {
+            this.addresses[i] = addresses[order[i]];
+            this.names[i] = names[order[i]];
+            this.functions[i] = functions[order[i]];
+            lookup.putIfAbsent(this.names[i], i);
+        }
+
+        for (int i = 0; i < count; i++)
+            order[i] = i;
+        Arrays.sort(order, (a, b) -> String.CASE_INSENSITIVE_ORDER.compare(this.names[a], this.names[b]));
+        byName = new int[count];
+        for (int i = 0; i < count; i++)
+            byName[i] = order[i];
+    }
+
+    public int size() {
+        return addresses.length;
+    }
+
+    public long getAddress(int idx) {
+        return addresses[idx];
+    }
+
+    public String getName(int idx) {
+        return names[idx];
+    }
+
+    public boolean isFunction(int idx) {
+        return functions[idx];
+    }
+
+    public Symbol getSymbol(int idx) {
+        return new Symbol(names[idx], addresses[idx], functions[idx]);
+    }
+
+    /**
+     * Returns the index of the symbol with the highest address not above
+     * <tt>address</tt>, or -1 if all symbols lie above <tt>address</tt>.
+     */
+    public int floor(long address) {
+        int lo = 0;
+        int hi = addresses.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Long.compareUnsigned(addresses[mid], address) <= 0)
+                lo = mid + 1;
+            else
+                hi = mid - 1;
+        }
+
+        return hi;
+    }
+
+    public Symbol findContaining(long address) {
+        int idx = floor(address);
+        return idx < 0 ? null : getSymbol(idx);
+    }
+
+    public int indexOf(String name) {
+        Integer idx = lookup.get(name);
+        return idx != null ? idx : -1;
+    }
+
+    public Symbol find(String name) {
+        int idx = indexOf(name);
+        return idx < 0 ? null : getSymbol(idx);
+    }
+
+    /**
+     * Returns at most <tt>max</tt> symbol names starting with <tt>prefix</tt>
+     * (ignoring case) in alphabetical order.
+     */
+    public List<String> complete(String prefix, int max) {
+        List<String> result = new ArrayList<String>();
+        for (int i = lowerBound(prefix); i < byName.length && result.size() < max; i++) {
+            String name = names[byName[i]];
+            if (!name.regionMatches(true, 0, prefix, 0, prefix.length()))
+                break;
+            result.add(name);
+        }
+
+        return result;
+    }
+
+}
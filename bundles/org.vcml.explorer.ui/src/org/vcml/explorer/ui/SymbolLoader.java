@@ -0,0 +1,253 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.explorer.ui;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.swt.widgets.Display;
+import org.vcml.session.ElfFile;
+import org.vcml.session.Module;
+import org.vcml.session.ReplyParser;
+import org.vcml.session.Session;
+import org.vcml.session.SessionException;
+
+/**
+ * Loads the function symbols of a processor in the background, once per
+ * connection. Loaders are shared by all views of the same processor within a
+ * session until the session disconnects. Listeners are notified on the UI
+ * thread, first with partial indices while parsing and finally with the
+ * complete index.
+ */
+public class SymbolLoader {
+
+    public interface Listener {
+        void symbolsChanged(SymbolIndex symbols);
+    }
+
+    public static final int FIRST_PUBLISH = 4096;
+
+    private static final HashMap<String, SymbolLoader> loaders = new HashMap<String, SymbolLoader>();
+
+    private Session session;
+
+    private String name;
+
+    private Object source = null;
+
+    private long hash = -1;
+
+    private volatile SymbolIndex symbols = SymbolIndex.EMPTY;
+
+    private List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+    private Job job = null;
+
+    public static synchronized SymbolLoader get(Session session, Module processor) {
+        String key = session.getURI() + "/" + processor.getName();
+        SymbolLoader loader = loaders.get(key);
+        if (loader == null || loader.session != session) {
+            loader = new SymbolLoader(session, processor.getName());
+            loaders.put(key, loader);
+        }
+
+        return loader;
+    }
+
+    /**
+     * Drops the loaders of <tt>session</tt> and cancels their pending jobs.
+     */
+    public static synchronized void remove(Session session) {
+        Iterator<SymbolLoader> it = loaders.values().iterator();
+        while (it.hasNext()) {
+            SymbolLoader loader = it.next();
+            if (loader.session == session) {
+                loader.cancel();
+                it.remove();
+            }
+        }
+    }
+
+    private synchronized void cancel() {
+        if (job != null)
+            job.cancel();
+        job = null;
+        source = null;
+    }
+
+    private void publish(SymbolIndex index) {
+        symbols = index;
+        Display.getDefault().asyncExec(() -> {
+            for (Listener listener : listeners)
+                listener.symbolsChanged(index);
+        });
+    }
+
+    private class Table implements ElfFile.SymbolVisitor {
+
+        private IProgressMonitor monitor;
+
+        private int next = FIRST_PUBLISH;
+
+        private int count = 0;
+
+        private String[] names = new String[FIRST_PUBLISH];
+
+        private long[] addresses = new long[FIRST_PUBLISH];
+
+        private void add(String name, long address) {
+            if (count == names.length) {
+                names = Arrays.copyOf(names, count * 2);
+                addresses = Arrays.copyOf(addresses, count * 2);
+            }
+
+            names[count] = name;
+            addresses[count++] = address;
+        }
+
+        private SymbolIndex toIndex() {
+            boolean[] functions = new boolean[count];
+            Arrays.fill(functions, true);
+            return new SymbolIndex(names, addresses, functions, count);
+        }
+
+        private Table(IProgressMonitor monitor) {
+            this.monitor = monitor;
+        }
+
+        @Override
+        public void visit(String name, long value, long size, int type) {
+            if (type != ElfFile.STT_FUNC || monitor.isCanceled())
+                return;
+
+            add(name, value);
+            if (count == next) {
+                publish(toIndex());
+                next *= 4;
+            }
+        }
+
+    }
+
+    private IStatus parse(String response, IProgressMonitor monitor) {
+        CRC32 crc = new CRC32();
+        crc.update(response.getBytes());
+        long value = crc.getValue();
+        if (value == hash)
+            return Status.OK_STATUS;
+
+        Table table = new Table(monitor);
+        ReplyParser.parseSymbols(response, table);
+        if (monitor.isCanceled())
+            return Status.CANCEL_STATUS;
+
+        hash = value;
+        publish(table.toIndex());
+        return Status.OK_STATUS;
+    }
+
+    private IStatus parse(ElfFile image, IProgressMonitor monitor) throws IOException {
+        Table table = new Table(monitor);
+        image.visitSymbols(table);
+        if (monitor.isCanceled())
+            return Status.CANCEL_STATUS;
+
+        hash = -1;
+        publish(table.toIndex());
+        return Status.OK_STATUS;
+    }
+
+    public SymbolLoader(Session session, String name) {
+        this.session = session;
+        this.name = name;
+    }
+
+    public SymbolIndex getSymbols() {
+        return symbols;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts loading symbols unless they have already been loaded, or are
+     * being loaded, from the same source. Symbols are read from the ELF image
+     * attached to <tt>processor</tt> if there is one, otherwise they are
+     * requested from the session once per connection.
+     */
+    public synchronized void load(Module processor) {
+        if (processor == null || !session.isConnected())
+            return;
+
+        ElfFile image = processor.getImage();
+        Object current = image != null ? image : session.getProtocol();
+        if (current == source)
+            return;
+
+        source = current;
+        if (job != null)
+            job.cancel();
+
+        job = new Job("Loading symbols of " + name) {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                try {
+                    if (image != null)
+                        return parse(image, monitor);
+                    return parse(processor.execute(Symbol.CMD_LSYM), monitor);
+                } catch (IOException | SessionException e) {
+                    synchronized (SymbolLoader.this) {
+                        source = null; // retry on next load
+                    }
+                    return new Status(IStatus.WARNING, "org.vcml.explorer.ui", e.getMessage(), e);
+                }
+            }
+        };
+
+        job.setSystem(true);
+        job.schedule();
+    }
+
+    /**
+     * Loads symbols again even if the source did not change, e.g. after
+     * the simulator loaded a new program.
+     */
+    public synchronized void reload(Module processor) {
+        cancel();
+        hash = -1;
+        load(processor);
+    }
+
+}
@@ -0,0 +1,195 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.explorer.ui;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Random access to a trace written by {@link TraceRecorder}. The file is
+ * memory mapped; seeking decodes at most one checkpoint interval. Traces
+ * that were not closed properly are indexed by scanning them once.
+ */
+public class TraceReader {
+
+    private File file;
+
+    private MappedByteBuffer buffer;
+
+    private String[] cores;
+
+    private long steps;
+
+    private long interval = TraceRecorder.CHECKPOINT_INTERVAL;
+
+    private long[] checkpoints;
+
+    private long end;
+
+    private long getVarint() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+
+        throw new IllegalStateException("malformed varint in " + file.getName());
+    }
+
+    private long getZigzag() {
+        long value = getVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private void skipStep() {
+        getVarint();
+        for (int i = 0; i < cores.length; i++)
+            getVarint();
+    }
+
+    private boolean readIndex() {
+        int size = buffer.capacity();
+        if (size < 12 || buffer.getInt(size - 4) != TraceRecorder.INDEX_MAGIC)
+            return false;
+
+        long index = buffer.getLong(size - 12);
+        if (index < buffer.position() || index + 16 > size - 12)
+            return false;
+
+        steps = buffer.getLong((int) index);
+        interval = buffer.getLong((int) index + 8);
+        int count = (int) ((steps + interval - 1) / interval);
+        checkpoints = new long[count];
+        for (int i = 0; i < count; i++)
+            checkpoints[i] = buffer.getLong((int) index + 16 + i * 8);
+        end = index;
+        return true;
+    }
+
+    private void scanIndex() {
+        checkpoints = new long[64];
+        buffer.limit(buffer.capacity());
+        int start = buffer.position();
+
+        steps = 0;
+        try {
+            while (buffer.hasRemaining()) {
+                long offset = buffer.position();
+                skipStep();
+                if (steps % interval == 0) {
+                    int idx = (int) (steps / interval);
+                    if (idx == checkpoints.length)
+                        checkpoints = Arrays.copyOf(checkpoints, idx * 2);
+                    checkpoints[idx] = offset;
+                }
+                steps++;
+            }
+        } catch (BufferUnderflowException | IllegalStateException e) {
+            // truncated last step
+        }
+
+        checkpoints = Arrays.copyOf(checkpoints, (int) ((steps + interval - 1) / interval));
+        end = buffer.position();
+        buffer.position(start);
+    }
+
+    public TraceReader(File file) throws IOException {
+        this.file = file;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException(file.getName() + " exceeds 2GB");
+            buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+            if (buffer.getInt() != TraceRecorder.MAGIC || buffer.get() != TraceRecorder.VERSION)
+                throw new IOException(file.getName() + " is not a trace file");
+
+            cores = new String[(int) getVarint()];
+            for (int i = 0; i < cores.length; i++) {
+                byte[] name = new byte[(int) getVarint()];
+                buffer.get(name);
+                cores[i] = new String(name, StandardCharsets.UTF_8);
+            }
+        } catch (BufferUnderflowException | IllegalStateException e) {
+            throw new IOException(file.getName() + " is truncated or corrupt", e);
+        }
+
+        if (!readIndex())
+            scanIndex();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getStepCount() {
+        return steps;
+    }
+
+    public int getCoreCount() {
+        return cores.length;
+    }
+
+    public String getCore(int idx) {
+        return cores[idx];
+    }
+
+    public int indexOf(String core) {
+        for (int i = 0; i < cores.length; i++)
+            if (cores[i].equals(core))
+                return i;
+        return -1;
+    }
+
+    /**
+     * Decodes step <tt>step</tt> into <tt>pcs</tt>, one program counter per
+     * core, and returns its simulated time in nanoseconds.
+     */
+    public synchronized long read(long step, long[] pcs) {
+        if (step < 0 || step >= steps)
+            throw new IndexOutOfBoundsException("step " + step + " out of range, trace has " + steps);
+
+        buffer.limit((int) end);
+        buffer.position((int) checkpoints[(int) (step / interval)]);
+        Arrays.fill(pcs, 0, cores.length, 0);
+
+        long time = 0;
+        for (long i = step - step % interval; i <= step; i++) {
+            time += getVarint();
+            for (int core = 0; core < cores.length; core++)
+                pcs[core] += getZigzag();
+        }
+
+        return time;
+    }
+
+}
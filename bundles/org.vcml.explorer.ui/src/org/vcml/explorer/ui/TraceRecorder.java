@@ -0,0 +1,171 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.explorer.ui;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Records the program counters of a fixed set of processors per simulation
+ * step into a compact trace file. Each step stores the simulated time and
+ * every program counter as a zigzag varint delta to the previous step. Every
+ * {@link #CHECKPOINT_INTERVAL} steps the deltas restart from zero, and the
+ * file offsets of these checkpoints are appended as an index on close, which
+ * allows {@link TraceReader} to seek without decoding the whole trace.
+ *
+ * <pre>
+ * header:  magic, version, varint cores, cores * (varint length, UTF-8 name)
+ * step:    varint time delta (ns), cores * zigzag varint pc delta
+ * index:   long step count, long interval, long[] checkpoint offsets
+ * trailer: long index offset, magic
+ * </pre>
+ */
+public class TraceRecorder {
+
+    public static final int MAGIC = 0x56505452; // "VPTR"
+
+    public static final int INDEX_MAGIC = 0x56504958; // "VPIX"
+
+    public static final int VERSION = 1;
+
+    public static final int CHECKPOINT_INTERVAL = 4096;
+
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    private FileChannel channel;
+
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    private long position = 0;
+
+    private int cores;
+
+    private long steps = 0;
+
+    private long lastTime = 0;
+
+    private long[] lastPcs;
+
+    private long[] checkpoints = new long[64];
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            position += channel.write(buffer);
+        buffer.clear();
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes)
+            flush();
+    }
+
+    private void putVarint(long value) {
+        while ((value & ~0x7fl) != 0) {
+            buffer.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+
+        buffer.put((byte) value);
+    }
+
+    private void putZigzag(long value) {
+        putVarint((value << 1) ^ (value >> 63));
+    }
+
+    private long offset() {
+        return position + buffer.position();
+    }
+
+    public TraceRecorder(File file, String[] names) throws IOException {
+        cores = names.length;
+        lastPcs = new long[cores];
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+
+        buffer.putInt(MAGIC);
+        buffer.put((byte) VERSION);
+        putVarint(cores);
+        for (String name : names) {
+            byte[] data = name.getBytes(StandardCharsets.UTF_8);
+            ensure(data.length + 10);
+            putVarint(data.length);
+            buffer.put(data);
+        }
+    }
+
+    public long getStepCount() {
+        return steps;
+    }
+
+    /**
+     * Appends one step. <tt>time</tt> is the simulated time in nanoseconds,
+     * <tt>pcs</tt> holds one program counter per core.
+     */
+    public void record(long time, long[] pcs) throws IOException {
+        ensure(10 * (cores + 1));
+
+        if (steps % CHECKPOINT_INTERVAL == 0) {
+            int idx = (int) (steps / CHECKPOINT_INTERVAL);
+            if (idx == checkpoints.length)
+                checkpoints = Arrays.copyOf(checkpoints, idx * 2);
+            checkpoints[idx] = offset();
+            lastTime = 0;
+            Arrays.fill(lastPcs, 0);
+        }
+
+        putVarint(time - lastTime);
+        lastTime = time;
+        for (int i = 0; i < cores; i++) {
+            putZigzag(pcs[i] - lastPcs[i]);
+            lastPcs[i] = pcs[i];
+        }
+
+        steps++;
+    }
+
+    public void close() throws IOException {
+        try {
+            long index = offset();
+            int count = (int) ((steps + CHECKPOINT_INTERVAL - 1) / CHECKPOINT_INTERVAL);
+            ensure(16);
+            buffer.putLong(steps);
+            buffer.putLong(CHECKPOINT_INTERVAL);
+            for (int i = 0; i < count; i++) {
+                ensure(8);
+                buffer.putLong(checkpoints[i]);
+            }
+
+            ensure(12);
+            buffer.putLong(index);
+            buffer.putInt(INDEX_MAGIC);
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+}
@@ -0,0 +1,213 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.explorer.ui.dialogs;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+
+import org.eclipse.jface.dialogs.Dialog;
+import org.eclipse.jface.dialogs.IDialogConstants;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.swt.widgets.TableItem;
+import org.eclipse.swt.widgets.Text;
+import org.vcml.explorer.ui.Resources;
+import org.vcml.explorer.ui.terminal.TerminalLog;
+
+public class TerminalLogDialog extends Dialog {
+
+    public static final int FIND_ID = IDialogConstants.CLIENT_ID + 1;
+
+    public static final int TIME_ID = IDialogConstants.CLIENT_ID + 2;
+
+    public static final int REFRESH_ID = IDialogConstants.CLIENT_ID + 3;
+
+    private static final SimpleDateFormat TIME_FORMAT = new SimpleDateFormat("HH:mm:ss.SSS");
+
+    private TerminalLog log;
+
+    private Text searchText;
+
+    private Text timeText;
+
+    private Label statusLabel;
+
+    private Table table;
+
+    private void refresh() {
+        table.setItemCount((int) Math.min(log.getLineCount(), Integer.MAX_VALUE));
+        table.clearAll();
+        statusLabel.setText(String.format("%d lines, %d bytes", log.getLineCount(), log.getSize()));
+    }
+
+    private void showLine(long line) {
+        if (line >= table.getItemCount())
+            refresh();
+
+        table.setSelection((int) line);
+        table.showSelection();
+    }
+
+    private void find() {
+        String pattern = searchText.getText();
+        if (pattern.isEmpty())
+            return;
+
+        try {
+            int selected = table.getSelectionIndex();
+            long from = 0;
+            if (selected >= 0)
+                from = selected + 1 < log.getLineCount() ? log.getLineOffset(selected + 1) : log.getSize();
+            long offset = log.find(pattern, from);
+            if (offset < 0) {
+                statusLabel.setText("'" + pattern + "' not found");
+                return;
+            }
+
+            showLine(log.getLineAt(offset));
+        } catch (IOException e) {
+            statusLabel.setText(e.getMessage());
+        }
+    }
+
+    private void jumpToTime() {
+        try {
+            LocalTime time = LocalTime.parse(timeText.getText());
+            long millis = LocalDate.now().atTime(time).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            showLine(log.findTime(millis));
+        } catch (DateTimeParseException e) {
+            statusLabel.setText("expected a time as HH:mm:ss");
+        }
+    }
+
+    public TerminalLogDialog(Shell parentShell, TerminalLog log) {
+        super(parentShell);
+        setShellStyle(SWT.BORDER | SWT.CLOSE | SWT.RESIZE | SWT.MODELESS);
+        setBlockOnOpen(false);
+        this.log = log;
+    }
+
+    @Override
+    protected Control createDialogArea(Composite parent) {
+        Composite container = (Composite) super.createDialogArea(parent);
+        container.setLayout(new GridLayout(2, false));
+
+        new Label(container, SWT.NONE).setText("Find:");
+        searchText = new Text(container, SWT.SINGLE | SWT.BORDER);
+        searchText.setFont(Resources.getMonoSpaceFont());
+        searchText.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+
+        new Label(container, SWT.NONE).setText("Time:");
+        timeText = new Text(container, SWT.SINGLE | SWT.BORDER);
+        timeText.setMessage("HH:mm:ss");
+        timeText.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+
+        table = new Table(container, SWT.VIRTUAL | SWT.BORDER | SWT.FULL_SELECTION | SWT.SINGLE);
+        table.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true, 2, 1));
+        table.setHeaderVisible(true);
+        table.setFont(Resources.getMonoSpaceFont());
+
+        TableColumn lineColumn = new TableColumn(table, SWT.RIGHT);
+        lineColumn.setText("Line");
+        lineColumn.setWidth(80);
+        TableColumn timeColumn = new TableColumn(table, SWT.LEFT);
+        timeColumn.setText("Time");
+        timeColumn.setWidth(100);
+        TableColumn textColumn = new TableColumn(table, SWT.LEFT);
+        textColumn.setText("Output");
+        textColumn.setWidth(600);
+
+        table.addListener(SWT.SetData, event -> {
+            TableItem item = (TableItem) event.item;
+            int line = table.indexOf(item);
+            try {
+                item.setText(0, Integer.toString(line + 1));
+                // only indexed lines have an exact arrival time
+                if (line % TerminalLog.INDEX_STRIDE == 0)
+                    item.setText(1, TIME_FORMAT.format(new Date(log.getLineTime(line))));
+                item.setText(2, log.readLine(line));
+            } catch (IOException e) {
+                item.setText(2, e.getMessage());
+            }
+        });
+
+        statusLabel = new Label(container, SWT.NONE);
+        statusLabel.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 2, 1));
+
+        refresh();
+        return container;
+    }
+
+    @Override
+    protected void createButtonsForButtonBar(Composite parent) {
+        createButton(parent, FIND_ID, "Find Next", true);
+        createButton(parent, TIME_ID, "Go to Time", false);
+        createButton(parent, REFRESH_ID, "Refresh", false);
+        createButton(parent, IDialogConstants.CANCEL_ID, "Close", false);
+    }
+
+    @Override
+    protected void buttonPressed(int buttonId) {
+        switch (buttonId) {
+        case FIND_ID:
+            find();
+            break;
+
+        case TIME_ID:
+            jumpToTime();
+            break;
+
+        case REFRESH_ID:
+            refresh();
+            break;
+
+        default:
+            super.buttonPressed(buttonId);
+        }
+    }
+
+    @Override
+    protected void configureShell(Shell newShell) {
+        newShell.setImage(Resources.getImage("icons/chip.png"));
+        super.configureShell(newShell);
+        newShell.setText("Log of " + log.getName() + " in " + log.getDirectory());
+    }
+
+    @Override
+    protected Point getInitialSize() {
+        return new Point(900, 600);
+    }
+
+}
@@ -0,0 +1,142 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.explorer.ui.dialogs;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+import org.eclipse.jface.dialogs.Dialog;
+import org.eclipse.jface.dialogs.IDialogConstants;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.swt.widgets.TableItem;
+import org.vcml.explorer.ui.Resources;
+import org.vcml.explorer.ui.terminal.TriggerEngine;
+
+/**
+ * Lists the most recent hits of a {@link TriggerEngine}, newest last, together
+ * with the outcome of their actions.
+ */
+public class TriggerHitsDialog extends Dialog {
+
+    public static final int REFRESH_ID = IDialogConstants.CLIENT_ID + 1;
+
+    private static final SimpleDateFormat TIME_FORMAT = new SimpleDateFormat("HH:mm:ss.SSS");
+
+    private String name;
+
+    private TriggerEngine engine;
+
+    private List<TriggerEngine.Hit> hits;
+
+    private Label statusLabel;
+
+    private Table table;
+
+    private void refresh() {
+        hits = engine.getHits();
+        table.setItemCount(hits.size());
+        table.clearAll();
+        if (!hits.isEmpty())
+            table.showItem(table.getItem(hits.size() - 1));
+        statusLabel.setText(String.format("%d hits, at most %d kept", hits.size(), TriggerEngine.MAX_HITS));
+    }
+
+    public TriggerHitsDialog(Shell parentShell, String name, TriggerEngine engine) {
+        super(parentShell);
+        setShellStyle(SWT.BORDER | SWT.CLOSE | SWT.RESIZE | SWT.MODELESS);
+        setBlockOnOpen(false);
+        this.name = name;
+        this.engine = engine;
+    }
+
+    @Override
+    protected Control createDialogArea(Composite parent) {
+        Composite container = (Composite) super.createDialogArea(parent);
+        container.setLayout(new GridLayout(1, false));
+
+        table = new Table(container, SWT.VIRTUAL | SWT.BORDER | SWT.FULL_SELECTION | SWT.SINGLE);
+        table.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true));
+        table.setHeaderVisible(true);
+        table.setFont(Resources.getMonoSpaceFont());
+
+        String[] titles = { "Time", "Last Polled Sim Time", "Trigger", "Output", "Result" };
+        int[] widths = { 100, 170, 200, 300, 300 };
+        for (int i = 0; i < titles.length; i++) {
+            TableColumn column = new TableColumn(table, SWT.LEFT);
+            column.setText(titles[i]);
+            column.setWidth(widths[i]);
+        }
+
+        table.addListener(SWT.SetData, event -> {
+            TableItem item = (TableItem) event.item;
+            TriggerEngine.Hit hit = hits.get(table.indexOf(item));
+            String result = hit.getResult();
+            item.setText(0, TIME_FORMAT.format(new Date(hit.getWallTime())));
+            item.setText(1, hit.getSimTime().toString());
+            item.setText(2, hit.getTrigger().toString());
+            item.setText(3, hit.getLine());
+            item.setText(4, result != null ? result.trim().replace('\n', ' ') : "");
+        });
+
+        statusLabel = new Label(container, SWT.NONE);
+        statusLabel.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+
+        refresh();
+        return container;
+    }
+
+    @Override
+    protected void createButtonsForButtonBar(Composite parent) {
+        createButton(parent, REFRESH_ID, "Refresh", true);
+        createButton(parent, IDialogConstants.CANCEL_ID, "Close", false);
+    }
+
+    @Override
+    protected void buttonPressed(int buttonId) {
+        if (buttonId == REFRESH_ID)
+            refresh();
+        else
+            super.buttonPressed(buttonId);
+    }
+
+    @Override
+    protected void configureShell(Shell newShell) {
+        newShell.setImage(Resources.getImage("icons/chip.png"));
+        super.configureShell(newShell);
+        newShell.setText("Trigger hits of " + name);
+    }
+
+    @Override
+    protected Point getInitialSize() {
+        return new Point(1000, 500);
+    }
+
+}
@@ -0,0 +1,193 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+package org.vcml.explorer.ui.handlers;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+import org.eclipse.e4.core.di.annotations.CanExecute;
+import org.eclipse.e4.core.di.annotations.Execute;
+import org.eclipse.jface.dialogs.IInputValidator;
+import org.eclipse.jface.dialogs.InputDialog;
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.jface.viewers.ArrayContentProvider;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.window.Window;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.FileDialog;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.ui.dialogs.ListSelectionDialog;
+import org.vcml.explorer.ui.PcSampler;
+import org.vcml.explorer.ui.TraceRecorder;
+import org.vcml.explorer.ui.parts.SmpPart;
+import org.vcml.explorer.ui.services.ISessionService;
+import org.vcml.session.Module;
+import org.vcml.session.Session;
+import org.vcml.session.SessionException;
+
+/**
+ * Records a program counter trace of selected processors without running
+ * the profiler views. The simulation is advanced by a fixed interval per
+ * step, as with {@link PcSampler}.
+ */
+public class RecordTraceHandler {
+
+    public static final int DEFAULT_STEPS = 1000;
+
+    private static IInputValidator countValidator = new IInputValidator() {
+        @Override
+        public String isValid(String text) {
+            try {
+                return Long.parseLong(text) > 0 ? null : "value must be positive";
+            } catch (NumberFormatException e) {
+                return "invalid number";
+            }
+        }
+    };
+
+    private static IInputValidator pollValidator = new IInputValidator() {
+        @Override
+        public String isValid(String text) {
+            try {
+                return Long.parseLong(text) >= 0 ? null : "value must not be negative";
+            } catch (NumberFormatException e) {
+                return "invalid number";
+            }
+        }
+    };
+
+    private static Module[] selectProcessors(Shell shell, Session session, List<Module> processors) {
+        ListSelectionDialog dialog = new ListSelectionDialog(shell, processors, ArrayContentProvider.getInstance(),
+                new LabelProvider() {
+                    @Override
+                    public String getText(Object element) {
+                        return ((Module) element).getName();
+                    }
+                }, "Processors to record:");
+        dialog.setTitle("Record Trace of " + session.getName());
+        dialog.setInitialSelections(processors.toArray());
+        if (dialog.open() != Window.OK || dialog.getResult().length == 0)
+            return null;
+
+        Object[] result = dialog.getResult();
+        Module[] selected = new Module[result.length];
+        for (int i = 0; i < result.length; i++)
+            selected[i] = (Module) result[i];
+        return selected;
+    }
+
+    /**
+     * Asks for the processors, file and stepping parameters and starts
+     * recording a trace of <tt>session</tt> in the background.
+     */
+    public static void record(Shell shell, ISessionService service, Session session) {
+        if (session == null || !session.isConnected() || session.isRunning())
+            return;
+
+        List<Module> processors;
+        try {
+            processors = SmpPart.findProcessors(session);
+        } catch (SessionException e) {
+            service.reportSessionError(session, e);
+            return;
+        }
+
+        if (processors.isEmpty()) {
+            MessageDialog.openInformation(shell, session.getName(), "No processors found to record.");
+            return;
+        }
+
+        Module[] selected = selectProcessors(shell, session, processors);
+        if (selected == null)
+            return;
+
+        FileDialog fileDialog = new FileDialog(shell, SWT.SAVE);
+        fileDialog.setText("Record Trace of " + session.getName());
+        fileDialog.setFilterExtensions(new String[] { "*.trace", "*" });
+        fileDialog.setOverwrite(true);
+        String path = fileDialog.open();
+        if (path == null)
+            return;
+
+        InputDialog stepsDialog = new InputDialog(shell, session.getName(), "Number of steps to record:",
+                Integer.toString(DEFAULT_STEPS), countValidator);
+        if (stepsDialog.open() != Window.OK)
+            return;
+
+        Duration quantum = session.getQuantum();
+        String interval = Long.toString(quantum != null ? quantum.toNanos() : 1000);
+        InputDialog intervalDialog = new InputDialog(shell, session.getName(), "Simulated time per step (ns):",
+                interval, countValidator);
+        if (intervalDialog.open() != Window.OK)
+            return;
+
+        InputDialog pollDialog = new InputDialog(shell, session.getName(), "Status poll period while stepping (ms):",
+                Long.toString(PcSampler.DEFAULT_POLL_MILLIS), pollValidator);
+        if (pollDialog.open() != Window.OK)
+            return;
+
+        String[] cores = new String[selected.length];
+        for (int i = 0; i < cores.length; i++)
+            cores[i] = selected[i].getName();
+
+        File file = new File(path);
+        int steps = Integer.parseInt(stepsDialog.getValue());
+        Duration period = Duration.ofNanos(Long.parseLong(intervalDialog.getValue()));
+        PcSampler sampler = new PcSampler(service, session, Arrays.asList(selected), steps, period);
+        sampler.setName("Recording trace of " + session.getName());
+        sampler.setPollMillis(Long.parseLong(pollDialog.getValue()));
+        try {
+            sampler.setRecorder(new TraceRecorder(file, cores));
+        } catch (IOException e) {
+            MessageDialog.openError(shell, session.getName(), "Cannot create " + file + ": " + e.getMessage());
+            return;
+        }
+
+        sampler.addJobChangeListener(new JobChangeAdapter() {
+            @Override
+            public void done(IJobChangeEvent event) {
+                Display.getDefault().asyncExec(() -> service.refreshSession(session));
+            }
+        });
+
+        sampler.setUser(true);
+        sampler.schedule();
+    }
+
+    @CanExecute
+    public boolean canExecute(ISessionService service) {
+        Session current = service.getSession();
+        if ((current == null) || !current.isConnected())
+            return false;
+        return !current.isRunning();
+    }
+
+    @Execute
+    public void execute(Shell shell, ISessionService service) {
+        record(shell, service, service.getSession());
+    }
+
+}
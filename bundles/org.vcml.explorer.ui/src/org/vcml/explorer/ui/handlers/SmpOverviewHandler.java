@@ -0,0 +1,71 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.explorer.ui.handlers;
+
+import java.util.List;
+
+import org.eclipse.e4.core.di.annotations.CanExecute;
+import org.eclipse.e4.core.di.annotations.Execute;
+import org.eclipse.e4.ui.model.application.MApplication;
+import org.eclipse.e4.ui.model.application.ui.basic.MBasicFactory;
+import org.eclipse.e4.ui.model.application.ui.basic.MPart;
+import org.eclipse.e4.ui.model.application.ui.basic.MPartStack;
+import org.eclipse.e4.ui.workbench.modeling.EModelService;
+import org.eclipse.e4.ui.workbench.modeling.EPartService;
+import org.eclipse.e4.ui.workbench.modeling.EPartService.PartState;
+import org.vcml.explorer.ui.services.ISessionService;
+import org.vcml.session.Session;
+
+public class SmpOverviewHandler {
+
+    public static final String PART_URI = "bundleclass://org.vcml.explorer.ui/org.vcml.explorer.ui.parts.SmpPart";
+
+    public static final String ICON_URI = "platform:/plugin/org.vcml.explorer.ui/icons/chip.png";
+
+    @CanExecute
+    public boolean canExecute(ISessionService sessionService) {
+        Session session = sessionService.getSession();
+        return session != null && session.isConnected();
+    }
+
+    @Execute
+    public void execute(EPartService partService, EModelService modelService, ISessionService sessionService,
+            MApplication application) {
+        Session session = sessionService.getSession();
+        String partId = "smp:" + session.toString();
+
+        MPart part = partService.findPart(partId);
+        if (part == null) {
+            part = MBasicFactory.INSTANCE.createPart();
+            part.setLabel("Processors of " + session.getName());
+            part.setContributionURI(PART_URI);
+            part.setCloseable(true);
+            part.setElementId(partId);
+            part.setIconURI(ICON_URI);
+        }
+
+        List<MPartStack> stacks = modelService.findElements(application, InspectSessionHandler.STACK_ID,
+                MPartStack.class, null);
+        stacks.get(0).getChildren().add(part);
+        partService.showPart(part, PartState.ACTIVATE);
+    }
+
+}
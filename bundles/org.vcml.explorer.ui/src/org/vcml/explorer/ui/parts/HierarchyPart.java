@@ -19,11 +19,19 @@
 
 package org.vcml.explorer.ui.parts;
 
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.eclipse.core.commands.ParameterizedCommand;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
 import org.eclipse.e4.core.commands.ECommandService;
 import org.eclipse.e4.core.commands.EHandlerService;
 import org.eclipse.e4.core.di.annotations.Optional;
@@ -35,14 +43,13 @@ import org.eclipse.jface.viewers.CellLabelProvider;
 import org.eclipse.jface.viewers.ColumnViewerToolTipSupport;
 import org.eclipse.jface.viewers.DoubleClickEvent;
 import org.eclipse.jface.viewers.IDoubleClickListener;
+import org.eclipse.jface.viewers.ILazyTreeContentProvider;
 import org.eclipse.jface.viewers.ISelectionChangedListener;
 import org.eclipse.jface.viewers.IStructuredSelection;
-import org.eclipse.jface.viewers.ITreeContentProvider;
 import org.eclipse.jface.viewers.SelectionChangedEvent;
+import org.eclipse.jface.viewers.StructuredSelection;
 import org.eclipse.jface.viewers.TreeViewer;
-import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.jface.viewers.ViewerCell;
-import org.eclipse.jface.viewers.ViewerComparator;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.MenuEvent;
 import org.eclipse.swt.events.MenuListener;
@@ -54,22 +61,30 @@ import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.Menu;
 import org.eclipse.swt.widgets.MenuItem;
 import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Text;
 import org.eclipse.swt.widgets.Tree;
 import org.eclipse.swt.widgets.TreeItem;
+import org.eclipse.ui.progress.UIJob;
 import org.vcml.explorer.ui.Resources;
 import org.vcml.explorer.ui.dialogs.CommandDialog;
 import org.vcml.explorer.ui.services.IInspectionService;
 import org.vcml.explorer.ui.services.ISessionService;
 import org.vcml.session.Command;
 import org.vcml.session.Module;
+import org.vcml.session.ModuleIndex;
 import org.vcml.session.Session;
 import org.vcml.session.SessionException;
 
 public class HierarchyPart {
 
+    public static final int EXPAND_CHUNK = 2000;
+
+    public static final int SEARCH_LIMIT = 1000;
+
     @Inject
     private ISessionService sessionService;
 
@@ -89,39 +104,112 @@ public class HierarchyPart {
 
     private Module selectedModule = null;
 
-    private ITreeContentProvider contentProvider = new ITreeContentProvider() {
+    private Text searchText;
+
+    private Label matchLabel;
+
+    private List<Module> matches = Collections.emptyList();
+
+    private int match = -1;
+
+    private Module rootOf(Object element) {
+        if (element instanceof Module)
+            return (Module) element;
+
+        Session session = (Session) element;
+        if (session == null || !session.isConnected())
+            return null;
+
+        try {
+            return session.getHierarchy();
+        } catch (SessionException e) {
+            sessionService.reportSessionError(session, e);
+            return null;
+        }
+    }
+
+    private ILazyTreeContentProvider contentProvider = new ILazyTreeContentProvider() {
         @Override
-        public boolean hasChildren(Object element) {
-            return ((Module) element).getChildren().length > 0;
+        public void updateElement(Object parent, int index) {
+            Module module = rootOf(parent);
+            if (module == null || index >= module.getChildCount())
+                return;
+
+            Module child = module.getChild(index);
+            viewer.replace(parent, index, child);
+            viewer.setChildCount(child, child.getChildCount());
+        }
+
+        @Override
+        public void updateChildCount(Object element, int currentChildCount) {
+            Module module = rootOf(element);
+            int count = module != null ? module.getChildCount() : 0;
+            if (count != currentChildCount)
+                viewer.setChildCount(element, count);
         }
 
         @Override
         public Object getParent(Object element) {
-            return ((Module) element).getParent();
+            Module parent = ((Module) element).getParent();
+            return parent == null || parent.isRoot() ? viewer.getInput() : parent;
+        }
+    };
+
+    private class ExpandJob extends UIJob {
+
+        private Deque<Module> pending = new ArrayDeque<Module>();
+
+        private int expanded = 0;
+
+        public ExpandJob(Module root) {
+            super("Expanding hierarchy");
+            pending.push(root);
+        }
+
+        private Object elementOf(Module module) {
+            return module.isRoot() ? viewer.getInput() : module;
         }
 
         @Override
-        public Object[] getElements(Object inputElement) {
-            Session session = (Session) inputElement;
-            if (!session.isConnected())
-                return new Object[0];
+        public IStatus runInUIThread(IProgressMonitor monitor) {
+            if (viewer.getControl().isDisposed())
+                return Status.CANCEL_STATUS;
 
+            Tree tree = viewer.getTree();
+            tree.setRedraw(false);
             try {
-                Object[] tops = session.getTopLevelObjects();
-                if (tops == null)
-                    return new Object[0];
-                return tops;
-            } catch (SessionException e) {
-                sessionService.reportSessionError(session, e);
-                return new Object[0];
+                for (int i = 0; i < EXPAND_CHUNK && !pending.isEmpty(); i++) {
+                    if (monitor.isCanceled())
+                        return Status.CANCEL_STATUS;
+
+                    Module module = pending.pop();
+                    Object element = elementOf(module);
+                    for (int j = module.getChildCount() - 1; j >= 0; j--) {
+                        Module child = module.getChild(j);
+                        viewer.replace(element, j, child);
+                        viewer.setChildCount(child, child.getChildCount());
+                        if (child.getChildCount() > 0)
+                            pending.push(child);
+                    }
+
+                    if (!module.isRoot())
+                        viewer.setExpandedState(module, true);
+                    expanded++;
+                }
+            } finally {
+                tree.setRedraw(true);
             }
-        }
 
-        @Override
-        public Object[] getChildren(Object parentElement) {
-            return ((Module) parentElement).getChildren();
+            if (!pending.isEmpty()) {
+                setName("Expanding hierarchy (" + expanded + " objects)");
+                schedule();
+            }
+
+            return Status.OK_STATUS;
         }
-    };
+    }
+
+    private ExpandJob expandJob = null;
 
     private CellLabelProvider labelProvider = new CellLabelProvider() {
         public String getText(Object element) {
@@ -155,23 +243,15 @@ public class HierarchyPart {
         }
     };
 
-    private ViewerComparator viewerComparator = new ViewerComparator() {
-        @Override
-        public int compare(Viewer viewer, Object e1, Object e2) {
-            Module m1 = (Module) e1;
-            Module m2 = (Module) e2;
-            return m1.getKind().compareTo(m2.getKind());
-        }
-
-    };
-
     @Inject
     @Optional
     public void sessionChanged(@UIEventTopic(ISessionService.TOPIC_SESSION_ANY) Session session) {
+        cancelExpand();
         if (session == null || !session.isConnected()) {
             viewer.getControl().setEnabled(false);
             viewer.setInput(null);
             selectedModule = null;
+            matches = Collections.emptyList();
             return;
         }
 
@@ -290,14 +370,13 @@ public class HierarchyPart {
                 showChildren.setText("Show Children");
                 showChildren.setData(selectedItem);
                 showChildren.setImage(Resources.getImage("icons/expand.gif"));
-                showChildren.setEnabled(selectedModule.getChildren().length > 0);
+                showChildren.setEnabled(selectedModule.getChildCount() > 0);
                 showChildren.addSelectionListener(new SelectionListener() {
                     @Override
                     public void widgetSelected(SelectionEvent e) {
                         MenuItem source = (MenuItem) e.getSource();
                         TreeItem item = (TreeItem) source.getData();
-                        item.setExpanded(true);
-                        viewer.refresh();
+                        viewer.setExpandedState(item.getData(), true);
                     }
 
                     @Override
@@ -316,8 +395,7 @@ public class HierarchyPart {
                     public void widgetSelected(SelectionEvent e) {
                         MenuItem source = (MenuItem) e.getSource();
                         TreeItem item = (TreeItem) source.getData();
-                        item.setExpanded(false);
-                        tree.update();
+                        viewer.setExpandedState(item.getData(), false);
                     }
 
                     @Override
@@ -359,18 +437,32 @@ public class HierarchyPart {
 
     @PostConstruct
     public void createComposite(Composite parent) {
-        viewer = new TreeViewer(parent, SWT.BORDER | SWT.MULTI);
+        searchText = new Text(parent, SWT.SEARCH | SWT.ICON_SEARCH | SWT.ICON_CANCEL);
+        searchText.setMessage("Find objects (kind:..., attr:...)");
+        searchText.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+        searchText.addListener(SWT.Modify, event -> search());
+        searchText.addListener(SWT.DefaultSelection, event -> {
+            if (event.detail == SWT.ICON_CANCEL)
+                searchText.setText("");
+            else
+                showNextMatch();
+        });
+
+        matchLabel = new Label(parent, SWT.NONE);
+        matchLabel.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, false, false));
+
+        viewer = new TreeViewer(parent, SWT.BORDER | SWT.MULTI | SWT.VIRTUAL);
+        viewer.setUseHashlookup(true);
         viewer.setContentProvider(contentProvider);
         viewer.setLabelProvider(labelProvider);
-        viewer.setComparator(viewerComparator);
         viewer.addSelectionChangedListener(viewerSelectionListener);
         viewer.addDoubleClickListener(doubleClickListener);
 
-        GridLayout layout = new GridLayout();
-        layout.makeColumnsEqualWidth = true;
+        GridLayout layout = new GridLayout(2, false);
         parent.setLayout(layout);
 
         GridData data = new GridData();
+        data.horizontalSpan = 2;
         data.grabExcessHorizontalSpace = true;
         data.grabExcessVerticalSpace = true;
         data.horizontalAlignment = SWT.FILL;
@@ -387,12 +479,85 @@ public class HierarchyPart {
         viewer.getTree().setFocus();
     }
 
+    private void search() {
+        matches = Collections.emptyList();
+        match = -1;
+
+        String query = searchText.getText();
+        Session session = (Session) viewer.getInput();
+        if (query.trim().isEmpty() || session == null || !session.isConnected()) {
+            matchLabel.setText("");
+            matchLabel.getParent().layout();
+            return;
+        }
+
+        try {
+            ModuleIndex index = session.getModuleIndex();
+            matches = index.search(query, SEARCH_LIMIT);
+        } catch (SessionException e) {
+            sessionService.reportSessionError(session, e);
+        }
+
+        matchLabel.setText(matches.size() < SEARCH_LIMIT ? matches.size() + " found" : SEARCH_LIMIT + "+ found");
+        matchLabel.getParent().layout();
+    }
+
+    private void showNextMatch() {
+        if (matches.isEmpty())
+            return;
+
+        match = (match + 1) % matches.size();
+        reveal(matches.get(match));
+        matchLabel.setText((match + 1) + " of " + matches.size());
+        matchLabel.getParent().layout();
+    }
+
+    /**
+     * Materializes only the items on the path to <tt>module</tt> and selects
+     * it.
+     */
+    public void reveal(Module module) {
+        Deque<Module> path = new ArrayDeque<Module>();
+        for (Module current = module; current != null && !current.isRoot(); current = current.getParent())
+            path.push(current);
+
+        Object parent = viewer.getInput();
+        for (Module current : path) {
+            viewer.replace(parent, current.getPosition(), current);
+            viewer.setChildCount(current, current.getChildCount());
+            if (current != module)
+                viewer.setExpandedState(current, true);
+            parent = current;
+        }
+
+        viewer.setSelection(new StructuredSelection(module), true);
+    }
+
+    private void cancelExpand() {
+        if (expandJob != null) {
+            expandJob.cancel();
+            expandJob = null;
+        }
+    }
+
     public void collapseAll() {
+        cancelExpand();
         viewer.collapseAll();
     }
 
+    /**
+     * Expands the whole hierarchy in chunks of {@link #EXPAND_CHUNK} objects,
+     * so that the UI stays responsive. The expansion can be canceled from
+     * the progress view or by collapsing the tree.
+     */
     public void expandAll() {
-        viewer.expandAll();
+        cancelExpand();
+        Module root = rootOf(viewer.getInput());
+        if (root == null)
+            return;
+
+        expandJob = new ExpandJob(root);
+        expandJob.schedule();
     }
 
 }
@@ -19,13 +19,24 @@
 
 package org.vcml.explorer.ui.parts;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.e4.core.di.annotations.Optional;
 import org.eclipse.e4.ui.di.Focus;
 import org.eclipse.e4.ui.di.UIEventTopic;
 import org.eclipse.e4.ui.workbench.modeling.ESelectionService;
+import org.eclipse.jface.dialogs.IInputValidator;
+import org.eclipse.jface.dialogs.InputDialog;
+import org.eclipse.jface.dialogs.MessageDialog;
 import org.eclipse.jface.viewers.CellLabelProvider;
 import org.eclipse.jface.viewers.ColumnLabelProvider;
 import org.eclipse.jface.viewers.IContentProvider;
@@ -33,7 +44,10 @@ import org.eclipse.jface.viewers.ILazyContentProvider;
 import org.eclipse.jface.viewers.TableViewer;
 import org.eclipse.jface.viewers.TableViewerColumn;
 import org.eclipse.jface.viewers.ViewerCell;
+import org.eclipse.jface.window.Window;
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.Font;
 import org.eclipse.swt.layout.FillLayout;
@@ -41,14 +55,20 @@ import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.FileDialog;
 import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Menu;
+import org.eclipse.swt.widgets.MenuItem;
 import org.eclipse.swt.widgets.Table;
 
+import org.vcml.explorer.ui.MemoryLoader;
 import org.vcml.explorer.ui.MemoryRow;
+import org.vcml.explorer.ui.MemorySnapshot;
 import org.vcml.explorer.ui.Resources;
 import org.vcml.explorer.ui.services.ISessionService;
 import org.vcml.session.Module;
 import org.vcml.session.Session;
+import org.vcml.session.SessionException;
 
 public class MemoryPart {
 
@@ -58,12 +78,14 @@ public class MemoryPart {
 
     public static final int COLUMN_WIDTH_SPACER = 10;
 
-    public static final int PAGE_SIZE = 4096;
+    public static final int PAGE_SIZE = MemorySnapshot.PAGE_SIZE;
 
     public static final int DEFAULT_INCREMENT = PAGE_SIZE / MemoryRow.SIZE;
 
     public static final String ERROR_CELL = "--";
 
+    public static final int MAX_REPORT_REGIONS = 64;
+
     private ISessionService service;
 
     private Session session;
@@ -76,6 +98,10 @@ public class MemoryPart {
 
     private TableViewerColumn address;
 
+    private MemorySnapshot snapshot;
+
+    private MemorySnapshot previous;
+
     private Listener scrollListener = new Listener() {
         private int lastIndex = 0;
 
@@ -99,7 +125,7 @@ public class MemoryPart {
     private IContentProvider contentProvider = new ILazyContentProvider() {
         @Override
         public void updateElement(int index) {
-            viewer.replace(new MemoryRow(index * MemoryRow.SIZE, memory), index);
+            viewer.replace(new MemoryRow(index * MemoryRow.SIZE, snapshot, previous), index);
         }
     };
 
@@ -144,6 +170,13 @@ public class MemoryPart {
         public Font getFont(Object element) {
             return Resources.getMonoSpaceFont();
         }
+
+        @Override
+        public Color getForeground(Object element) {
+            if (!(element instanceof MemoryRow) || !((MemoryRow) element).isChanged(column))
+                return null;
+            return Display.getDefault().getSystemColor(SWT.COLOR_RED);
+        }
     };
 
     private static void addSpacerColumn(TableViewer viewer) {
@@ -157,6 +190,151 @@ public class MemoryPart {
         });
     }
 
+    private void showChanges() {
+        if (previous == null) {
+            MessageDialog.openInformation(viewer.getControl().getShell(), name,
+                    "No earlier snapshot available, changes are tracked from the next stop on.");
+            return;
+        }
+
+        MemorySnapshot current = snapshot;
+        MemorySnapshot older = previous;
+        Job job = new Job("Comparing " + name + " with last stop") {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                List<MemorySnapshot.Region> regions = current.diff(older);
+                Display.getDefault().asyncExec(() -> changesCompleted(older, regions));
+                return Status.OK_STATUS;
+            }
+        };
+
+        job.schedule();
+    }
+
+    private void changesCompleted(MemorySnapshot older, List<MemorySnapshot.Region> regions) {
+        if (viewer.getControl().isDisposed())
+            return;
+
+        if (regions.isEmpty()) {
+            MessageDialog.openInformation(viewer.getControl().getShell(), name,
+                    "No changes in " + older.getPageCount() + " inspected pages since last stop.");
+            return;
+        }
+
+        long total = 0;
+        StringBuilder report = new StringBuilder();
+        for (int i = 0; i < regions.size(); i++) {
+            total += regions.get(i).getSize();
+            if (i < MAX_REPORT_REGIONS)
+                report.append(regions.get(i)).append('\n');
+        }
+
+        if (regions.size() > MAX_REPORT_REGIONS)
+            report.append("... and " + (regions.size() - MAX_REPORT_REGIONS) + " more regions\n");
+
+        report.insert(0, regions.size() + " regions (" + total + " bytes) changed since last stop:\n\n");
+        MessageDialog.openInformation(viewer.getControl().getShell(), name, report.toString());
+    }
+
+    private IInputValidator offsetValidator = new IInputValidator() {
+        @Override
+        public String isValid(String text) {
+            try {
+                Long.parseUnsignedLong(text.startsWith("0x") ? text.substring(2) : text, 16);
+                return null;
+            } catch (NumberFormatException e) {
+                return "invalid hexadecimal offset";
+            }
+        }
+    };
+
+    private void loadCompleted(MemoryLoader loader, long mismatch) {
+        if (viewer.getControl().isDisposed())
+            return;
+
+        if (snapshot.getPageCount() > 0)
+            previous = snapshot;
+        snapshot = new MemorySnapshot(memory, session, previous);
+        viewer.refresh();
+
+        String message = String.format("Loaded %d bytes from %s to offset 0x%x", loader.getSize(),
+                loader.getFile().getName(), loader.getOffset());
+        if (mismatch < 0)
+            MessageDialog.openInformation(viewer.getControl().getShell(), name, message);
+        else
+            MessageDialog.openError(viewer.getControl().getShell(), name,
+                    message + String.format(", but read-back verification failed at offset 0x%x", mismatch));
+    }
+
+    private void loadFile() {
+        if (!MemoryLoader.canLoad(memory)) {
+            MessageDialog.openError(viewer.getControl().getShell(), name,
+                    name + " does not support the '" + MemoryLoader.CMD_WRITE + "' command");
+            return;
+        }
+
+        FileDialog fileDialog = new FileDialog(viewer.getControl().getShell(), SWT.OPEN);
+        fileDialog.setText("Load File into " + name);
+        String path = fileDialog.open();
+        if (path == null)
+            return;
+
+        InputDialog offsetDialog = new InputDialog(viewer.getControl().getShell(), name,
+                "Offset into memory (hexadecimal):", "0x0", offsetValidator);
+        if (offsetDialog.open() != Window.OK)
+            return;
+
+        String text = offsetDialog.getValue();
+        long offset = Long.parseUnsignedLong(text.startsWith("0x") ? text.substring(2) : text, 16);
+        MemoryLoader loader = new MemoryLoader(memory, new File(path), offset);
+
+        Job job = new Job("Loading " + loader.getFile().getName() + " into " + name) {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                try {
+                    if (!loader.load(monitor))
+                        return Status.CANCEL_STATUS;
+                    long mismatch = loader.verify();
+                    Display.getDefault().asyncExec(() -> loadCompleted(loader, mismatch));
+                    return Status.OK_STATUS;
+                } catch (IOException | SessionException e) {
+                    return new Status(IStatus.ERROR, "org.vcml.explorer.ui", e.getMessage(), e);
+                }
+            }
+        };
+
+        job.setUser(true);
+        job.schedule();
+    }
+
+    private Menu buildContextMenu(Table table) {
+        Menu menu = new Menu(table);
+        MenuItem loadItem = new MenuItem(menu, SWT.NONE);
+        loadItem.setText("Load File into Memory...");
+        loadItem.setImage(Resources.getImage("icons/add.gif"));
+        loadItem.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                if (memory != null)
+                    loadFile();
+            }
+        });
+
+        new MenuItem(menu, SWT.SEPARATOR);
+
+        MenuItem changesItem = new MenuItem(menu, SWT.NONE);
+        changesItem.setText("Show Changes Since Last Stop...");
+        changesItem.setImage(Resources.getImage("icons/inspect.gif"));
+        changesItem.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                showChanges();
+            }
+        });
+
+        return menu;
+    }
+
     @Inject
     public MemoryPart(ISessionService sessionService, ESelectionService selectionService) {
         service = sessionService;
@@ -191,6 +369,7 @@ public class MemoryPart {
 
         addSpacerColumn(viewer);
 
+        snapshot = new MemorySnapshot(memory, session);
         viewer.setInput(memory);
         viewer.setItemCount(DEFAULT_INCREMENT);
 
@@ -198,6 +377,7 @@ public class MemoryPart {
         table.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true));
         table.setHeaderVisible(true);
         table.setLinesVisible(false);
+        table.setMenu(buildContextMenu(table));
 
         table.addListener(SWT.MouseDown, scrollListener);
         table.addListener(SWT.MouseUp, scrollListener);
@@ -209,6 +389,12 @@ public class MemoryPart {
 
     public void update() {
         memory = service.findModule(session, name);
+        if (memory != null && !snapshot.isCurrent(session)) {
+            if (snapshot.getPageCount() > 0)
+                previous = snapshot;
+            snapshot = new MemorySnapshot(memory, session, previous);
+        }
+
         viewer.setInput(memory);
         viewer.getControl().setEnabled(memory != null);
     }
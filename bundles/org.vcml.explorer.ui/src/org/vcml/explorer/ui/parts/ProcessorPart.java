@@ -19,19 +19,39 @@
 
 package org.vcml.explorer.ui.parts;
 
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.List;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
 import org.eclipse.e4.core.di.annotations.Optional;
 import org.eclipse.e4.ui.di.Focus;
 import org.eclipse.e4.ui.di.UIEventTopic;
+import org.eclipse.e4.ui.model.application.MApplication;
+import org.eclipse.e4.ui.model.application.ui.basic.MBasicFactory;
+import org.eclipse.e4.ui.model.application.ui.basic.MPart;
+import org.eclipse.e4.ui.model.application.ui.basic.MPartStack;
+import org.eclipse.e4.ui.workbench.modeling.EModelService;
+import org.eclipse.e4.ui.workbench.modeling.EPartService;
+import org.eclipse.e4.ui.workbench.modeling.EPartService.PartState;
 import org.eclipse.e4.ui.workbench.modeling.ESelectionService;
-import org.eclipse.jface.fieldassist.AutoCompleteField;
+import org.eclipse.jface.dialogs.IInputValidator;
+import org.eclipse.jface.dialogs.InputDialog;
+import org.eclipse.jface.dialogs.MessageDialog;
 import org.eclipse.jface.fieldassist.ComboContentAdapter;
+import org.eclipse.jface.fieldassist.ContentProposal;
+import org.eclipse.jface.fieldassist.ContentProposalAdapter;
+import org.eclipse.jface.fieldassist.IContentProposal;
+import org.eclipse.jface.fieldassist.IContentProposalProvider;
+import org.eclipse.jface.viewers.ArrayContentProvider;
 import org.eclipse.jface.viewers.ColumnLabelProvider;
 import org.eclipse.jface.viewers.ComboViewer;
 import org.eclipse.jface.viewers.ILazyContentProvider;
@@ -40,7 +60,11 @@ import org.eclipse.jface.viewers.SelectionChangedEvent;
 import org.eclipse.jface.viewers.TableViewer;
 import org.eclipse.jface.viewers.TableViewerColumn;
 import org.eclipse.jface.viewers.Viewer;
+import org.eclipse.jface.window.Window;
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.SashForm;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.events.TraverseEvent;
 import org.eclipse.swt.events.TraverseListener;
 import org.eclipse.swt.graphics.Color;
@@ -52,14 +76,31 @@ import org.eclipse.swt.widgets.Combo;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.FileDialog;
 import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Menu;
+import org.eclipse.swt.widgets.MenuItem;
+import org.eclipse.swt.widgets.Shell;
 import org.eclipse.swt.widgets.Table;
+import org.vcml.explorer.ui.DisassemblyCache;
+import org.vcml.explorer.ui.ImageCodeSource;
 import org.vcml.explorer.ui.Instruction;
+import org.vcml.explorer.ui.InstructionIndex;
+import org.vcml.explorer.ui.PcSampler;
+import org.vcml.explorer.ui.Profile;
+import org.vcml.explorer.ui.RegisterFile;
 import org.vcml.explorer.ui.Resources;
 import org.vcml.explorer.ui.Symbol;
+import org.vcml.explorer.ui.SymbolIndex;
+import org.vcml.explorer.ui.SymbolLoader;
+import org.vcml.explorer.ui.TraceReader;
+import org.vcml.explorer.ui.handlers.InspectSessionHandler;
+import org.vcml.explorer.ui.handlers.RecordTraceHandler;
 import org.vcml.explorer.ui.services.ISessionService;
+import org.vcml.session.ElfFile;
 import org.vcml.session.Module;
 import org.vcml.session.Session;
+import org.vcml.session.SessionException;
 
 public class ProcessorPart {
 
@@ -71,22 +112,24 @@ public class ProcessorPart {
 
     public static final long SCROLL_BYTES = SCROLL_COUNT * 4l;
 
-    public static long getProgramCounter(Module processor) {
-        try {
-            String result = processor.execute("dump");
-            Pattern pattern = Pattern.compile("PC 0x([0-9a-f]{16})");
-            Matcher matcher = pattern.matcher(result);
-
-            if (matcher.find())
-                return Long.parseUnsignedLong(matcher.group(1), 16);
-
-            System.err.println("Error fetching program counter");
-            return 0;
-        } catch (Exception e) {
-            System.err.println("Error fetching program counter: " + e.getMessage());
-            return 0;
-        }
-    }
+    public static final long DISAS_BYTES = SCROLL_BYTES;
+
+    public static final int MAX_PROPOSALS = 64;
+
+    public static final int DEFAULT_SAMPLES = 1000;
+
+    public static final String PROFILE_URI = "bundleclass://org.vcml.explorer.ui/org.vcml.explorer.ui.parts.ProfilePart";
+
+    public static final String PROFILE_ICON_URI = "platform:/plugin/org.vcml.explorer.ui/icons/clock.png";
+
+    @Inject
+    private EPartService partService;
+
+    @Inject
+    private EModelService modelService;
+
+    @Inject
+    private MApplication application;
 
     private ISessionService service;
     private Session session;
@@ -94,16 +137,26 @@ public class ProcessorPart {
     private String name;
 
     private long topAddress;
+    private InstructionIndex index = new InstructionIndex();
     private long programCounter;
     private HashMap<Long, Instruction> instructions;
-    private Symbol[] symbols;
+    private SymbolLoader loader;
+    private ImageCodeSource codeSource;
+    private SymbolIndex symbols = SymbolIndex.EMPTY;
     private Symbol symbolPC;
-    private String[] symbolNames;
+
+    private TraceReader trace;
+    private long[] tracePcs;
+    private long traceStep;
 
     private ComboViewer symbolViewer;
-    private AutoCompleteField symbolAutoComplete;
+    private ContentProposalAdapter symbolProposals;
+
+    private RegisterFile registers;
+    private TableViewer registerViewer;
 
     private TableViewer instructionViewer;
+    private TableViewerColumn heatColumn;
     private TableViewerColumn iconColumn;
     private TableViewerColumn physColumn;
     private TableViewerColumn virtColumn;
@@ -111,25 +164,57 @@ public class ProcessorPart {
     private TableViewerColumn dissColumn;
     private TableViewerColumn symbColumn;
 
+    private long nextOf(long addr) {
+        return addr + Math.max(fetchInstruction(addr).getSize(), 1);
+    }
+
+    private boolean extend() {
+        if (index.isClosed())
+            return false;
+
+        long last = index.last();
+        long next = nextOf(last);
+        if (Long.compareUnsigned(next, last) <= 0) {
+            index.close(); // wrapped around the top of the address space
+            return false;
+        }
+
+        index.append(next);
+        return true;
+    }
+
+    private boolean reach(int idx) {
+        while (index.size() <= idx) {
+            if (!extend())
+                return false;
+        }
+
+        return true;
+    }
+
     private long addrOf(int idx) {
-        long addr = topAddress;
-        for (int i = 0; i < idx; i++)
-            addr += fetchInstruction(addr).getSize();
-        return addr;
+        reach(idx);
+        return index.get(Math.min(idx, index.size() - 1));
     }
 
     private int indexOf(long addr) {
-        int idx = 0;
-        if (addr - topAddress < 0) // if addr < topAddr (workaround for no unsigned long in Java)
+        if (Long.compareUnsigned(addr, topAddress) < 0)
             return -1;
 
-        long curr = topAddress;
-        while (curr - addr < 0) { // while (curr < addr) ...
-            curr += fetchInstruction(curr).getSize();
-            idx++;
+        while (Long.compareUnsigned(index.last(), addr) < 0) {
+            if (!extend())
+                break;
         }
 
-        return idx;
+        int idx = index.search(addr);
+        idx = idx < 0 ? -(idx + 1) : idx;
+        return Math.min(idx, index.size() - 1);
+    }
+
+    private void fetchBlock(long addr) {
+        DisassemblyCache cache = DisassemblyCache.getDefault();
+        for (Instruction insn : cache.disassemble(processor, addr, addr + DISAS_BYTES, codeSource, symbols))
+            instructions.putIfAbsent(insn.getVirtualAddress(), insn);
     }
 
     private Instruction fetchInstruction(long addr) {
@@ -137,6 +222,11 @@ public class ProcessorPart {
         if (insn != null)
             return insn;
 
+        fetchBlock(addr);
+        insn = instructions.get(addr);
+        if (insn != null)
+            return insn;
+
         insn = new Instruction(addr, processor);
         if (insn.getVirtualAddress() != addr) {
             System.err.println(String.format("Disassembling address 0x%016x returned instruction at address 0x%016x",
@@ -144,11 +234,18 @@ public class ProcessorPart {
         }
 
         instructions.put(insn.getVirtualAddress(), insn);
+        instructions.putIfAbsent(addr, insn);
         return insn;
     }
 
     private void scrollDown() {
         int count = instructionViewer.getTable().getItemCount();
+        if (index.isClosed()) {
+            if (count > index.size())
+                instructionViewer.setItemCount(index.size());
+            return;
+        }
+
         instructionViewer.setItemCount(count + SCROLL_COUNT);
     }
 
@@ -158,21 +255,25 @@ public class ProcessorPart {
 
         Table table = instructionViewer.getTable();
         int selected = table.getSelectionIndex();
-        long selectedAddr = addrOf(selected);
+        long selectedAddr = addrOf(Math.max(selected, 0));
 
         long oldTop = topAddress;
         topAddress -= SCROLL_BYTES;
-        if ((oldTop > 0 && topAddress < 0) || (oldTop < 0 && topAddress > 0))
+        if (Long.compareUnsigned(topAddress, oldTop) > 0)
             topAddress = 0;
 
-        int added = indexOf(oldTop) + 1;
-        int count = instructionViewer.getTable().getItemCount();
+        long[] block = new long[(int) (oldTop - topAddress)];
+        int added = 0;
+        for (long addr = topAddress; Long.compareUnsigned(addr, oldTop) < 0; addr = nextOf(addr))
+            block[added++] = addr;
+        index.prepend(block, added);
+
+        int count = table.getItemCount();
         instructionViewer.setItemCount(count + added);
         instructionViewer.refresh();
 
-        selected = indexOf(selectedAddr);
-        table.setSelection(selected);
-        table.setTopIndex(SCROLL_COUNT);
+        table.setSelection(indexOf(selectedAddr));
+        table.setTopIndex(added);
     }
 
     private Listener scrollListener = new Listener() {
@@ -201,26 +302,39 @@ public class ProcessorPart {
     private Symbol lookupSymbol(String name) {
         if (name.equals(PROGRAM_COUNTER))
             return symbolPC;
-        for (Symbol sym : symbols)
-            if (sym.getName().equals(name))
-                return sym;
-        return null;
+        return symbols.find(name);
     }
 
+    private SymbolLoader.Listener symbolListener = new SymbolLoader.Listener() {
+        @Override
+        public void symbolsChanged(SymbolIndex index) {
+            symbols = index;
+        }
+    };
+
+    private IContentProposalProvider proposalProvider = new IContentProposalProvider() {
+        @Override
+        public IContentProposal[] getProposals(String contents, int position) {
+            String prefix = contents.substring(0, position);
+            ArrayList<IContentProposal> proposals = new ArrayList<IContentProposal>();
+            if (PROGRAM_COUNTER.regionMatches(true, 0, prefix, 0, prefix.length()))
+                proposals.add(new ContentProposal(PROGRAM_COUNTER));
+            for (String name : symbols.complete(prefix, MAX_PROPOSALS))
+                proposals.add(new ContentProposal(name));
+            return proposals.toArray(new IContentProposal[proposals.size()]);
+        }
+    };
+
     private void showRange(long address, long size) {
         topAddress = address & ~0xffl;
         instructions = new HashMap<Long, Instruction>();
+        index.clear();
+        index.append(topAddress);
 
         instructionViewer.setInput(processor);
         instructionViewer.setItemCount(SCROLL_COUNT);
 
-        int selected = 0;
-        long addr = topAddress;
-        while (addr < address) {
-            addr += fetchInstruction(addr).getSize();
-            selected++;
-        }
-
+        int selected = indexOf(address);
         Table table = instructionViewer.getTable();
         table.setSelection(selected);
         table.setTopIndex(selected);
@@ -231,6 +345,324 @@ public class ProcessorPart {
         showRange(address, size);
     }
 
+    private void loadImage() {
+        Shell shell = instructionViewer.getControl().getShell();
+        FileDialog fileDialog = new FileDialog(shell, SWT.OPEN);
+        fileDialog.setText("Load ELF Symbols for " + name);
+        String path = fileDialog.open();
+        if (path == null)
+            return;
+
+        try {
+            processor.setImage(new ElfFile(new File(path)));
+            loader.load(processor);
+        } catch (IOException e) {
+            MessageDialog.openError(shell, name, "Cannot load " + path + ": " + e.getMessage());
+        }
+    }
+
+    private Menu buildContextMenu(Table table) {
+        Menu menu = new Menu(table);
+        MenuItem loadItem = new MenuItem(menu, SWT.NONE);
+        loadItem.setText("Load Symbols from ELF...");
+        loadItem.setImage(Resources.getImage("icons/add.gif"));
+        loadItem.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                loadImage();
+            }
+        });
+
+        MenuItem reloadItem = new MenuItem(menu, SWT.NONE);
+        reloadItem.setText("Reload Symbols");
+        reloadItem.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                loader.reload(processor);
+            }
+        });
+
+        MenuItem codeItem = new MenuItem(menu, SWT.CHECK);
+        codeItem.setText("Serve Code from ELF Image");
+        codeItem.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                setCodeSource(codeItem.getSelection());
+            }
+        });
+
+        menu.addListener(SWT.Show, new Listener() {
+            @Override
+            public void handleEvent(Event event) {
+                reloadItem.setEnabled(session.isConnected() && !session.isRunning());
+                codeItem.setEnabled(processor.getImage() != null);
+                codeItem.setSelection(codeSource != null);
+            }
+        });
+
+        new MenuItem(menu, SWT.SEPARATOR);
+
+        MenuItem profileItem = new MenuItem(menu, SWT.NONE);
+        profileItem.setText("Profile Simulation...");
+        profileItem.setImage(Resources.getImage("icons/clock.png"));
+        profileItem.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                startProfiling();
+            }
+        });
+
+        MenuItem recordItem = new MenuItem(menu, SWT.NONE);
+        recordItem.setText("Record Trace...");
+        recordItem.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                startRecording();
+            }
+        });
+
+        MenuItem flatItem = new MenuItem(menu, SWT.NONE);
+        flatItem.setText("Show Flat Profile");
+        flatItem.setImage(Resources.getImage("icons/inspect.gif"));
+        flatItem.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                showProfile(Profile.getLatest(session));
+            }
+        });
+
+        new MenuItem(menu, SWT.SEPARATOR);
+
+        MenuItem openItem = new MenuItem(menu, SWT.NONE);
+        openItem.setText("Open Trace...");
+        openItem.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                openTrace();
+            }
+        });
+
+        MenuItem gotoItem = new MenuItem(menu, SWT.NONE);
+        gotoItem.setText("Go to Trace Step...");
+        gotoItem.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                gotoTraceStep();
+            }
+        });
+
+        MenuItem nextItem = new MenuItem(menu, SWT.NONE);
+        nextItem.setText("Next Trace Step");
+        nextItem.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                showTraceStep(traceStep + 1);
+            }
+        });
+
+        MenuItem prevItem = new MenuItem(menu, SWT.NONE);
+        prevItem.setText("Previous Trace Step");
+        prevItem.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                showTraceStep(traceStep - 1);
+            }
+        });
+
+        menu.addListener(SWT.Show, new Listener() {
+            @Override
+            public void handleEvent(Event event) {
+                gotoItem.setEnabled(trace != null);
+                nextItem.setEnabled(trace != null && traceStep + 1 < trace.getStepCount());
+                prevItem.setEnabled(trace != null && traceStep > 0);
+            }
+        });
+
+        return menu;
+    }
+
+    private IInputValidator countValidator = new IInputValidator() {
+        @Override
+        public String isValid(String text) {
+            try {
+                return Long.parseLong(text) > 0 ? null : "value must be positive";
+            } catch (NumberFormatException e) {
+                return "invalid number";
+            }
+        }
+    };
+
+    private IInputValidator pollValidator = new IInputValidator() {
+        @Override
+        public String isValid(String text) {
+            try {
+                return Long.parseLong(text) >= 0 ? null : "value must not be negative";
+            } catch (NumberFormatException e) {
+                return "invalid number";
+            }
+        }
+    };
+
+    private void startRecording() {
+        RecordTraceHandler.record(instructionViewer.getControl().getShell(), service, session);
+    }
+
+    private void startProfiling() {
+        Shell shell = instructionViewer.getControl().getShell();
+        if (!session.isConnected() || session.isRunning())
+            return;
+
+        InputDialog samplesDialog = new InputDialog(shell, name, "Number of samples:",
+                Integer.toString(DEFAULT_SAMPLES), countValidator);
+        if (samplesDialog.open() != Window.OK)
+            return;
+
+        Duration quantum = session.getQuantum();
+        String interval = Long.toString(quantum != null ? quantum.toNanos() : 1000);
+        InputDialog intervalDialog = new InputDialog(shell, name, "Simulated time between samples (ns):",
+                interval, countValidator);
+        if (intervalDialog.open() != Window.OK)
+            return;
+
+        InputDialog pollDialog = new InputDialog(shell, name, "Status poll period while stepping (ms):",
+                Long.toString(PcSampler.DEFAULT_POLL_MILLIS), pollValidator);
+        if (pollDialog.open() != Window.OK)
+            return;
+
+        List<Module> processors;
+        try {
+            processors = SmpPart.findProcessors(session);
+        } catch (SessionException e) {
+            service.reportSessionError(session, e);
+            return;
+        }
+
+        int samples = Integer.parseInt(samplesDialog.getValue());
+        Duration period = Duration.ofNanos(Long.parseLong(intervalDialog.getValue()));
+        PcSampler sampler = new PcSampler(service, session, processors, samples, period);
+        sampler.setPollMillis(Long.parseLong(pollDialog.getValue()));
+
+        sampler.addJobChangeListener(new JobChangeAdapter() {
+            @Override
+            public void done(IJobChangeEvent event) {
+                Display.getDefault().asyncExec(() -> {
+                    service.refreshSession(session);
+                    if (event.getResult().isOK())
+                        showProfile(sampler.getProfile());
+                });
+            }
+        });
+
+        sampler.setUser(true);
+        sampler.schedule();
+    }
+
+    private void openTrace() {
+        Shell shell = instructionViewer.getControl().getShell();
+        FileDialog fileDialog = new FileDialog(shell, SWT.OPEN);
+        fileDialog.setText("Open Trace for " + name);
+        fileDialog.setFilterExtensions(new String[] { "*.trace", "*" });
+        String path = fileDialog.open();
+        if (path == null)
+            return;
+
+        try {
+            TraceReader reader = new TraceReader(new File(path));
+            if (reader.indexOf(name) < 0) {
+                MessageDialog.openError(shell, name, path + " contains no trace of " + name);
+                return;
+            }
+
+            trace = reader;
+            tracePcs = new long[trace.getCoreCount()];
+            showTraceStep(0);
+        } catch (IOException e) {
+            MessageDialog.openError(shell, name, "Cannot open " + path + ": " + e.getMessage());
+        }
+    }
+
+    private void gotoTraceStep() {
+        if (trace == null)
+            return;
+
+        InputDialog dialog = new InputDialog(instructionViewer.getControl().getShell(), name,
+                "Trace step (0 - " + (trace.getStepCount() - 1) + "):", Long.toString(traceStep),
+                new IInputValidator() {
+                    @Override
+                    public String isValid(String text) {
+                        try {
+                            long step = Long.parseLong(text);
+                            return step >= 0 && step < trace.getStepCount() ? null : "step out of range";
+                        } catch (NumberFormatException e) {
+                            return "invalid number";
+                        }
+                    }
+                });
+
+        if (dialog.open() == Window.OK)
+            showTraceStep(Long.parseLong(dialog.getValue()));
+    }
+
+    private void showTraceStep(long step) {
+        if (trace == null || step < 0 || step >= trace.getStepCount())
+            return;
+
+        long time = trace.read(step, tracePcs);
+        traceStep = step;
+        programCounter = tracePcs[trace.indexOf(name)];
+        showRange(programCounter);
+        symbolViewer.getCombo().setText(String.format("step %d @ %d ns", step, time));
+    }
+
+    private void showProfile(Profile profile) {
+        if (profile == null || profile.indexOf(name) < 0 || instructionViewer.getControl().isDisposed())
+            return;
+
+        instructionViewer.refresh();
+
+        String partId = "profile:" + session.toString() + ":" + name;
+        MPart part = partService.findPart(partId);
+        if (part != null)
+            partService.hidePart(part, true);
+
+        part = MBasicFactory.INSTANCE.createPart();
+        part.setLabel("Profile of " + name);
+        part.setContributionURI(PROFILE_URI);
+        part.setCloseable(true);
+        part.setElementId(partId);
+        part.setIconURI(PROFILE_ICON_URI);
+        part.getTransientData().put(ProfilePart.DATA_PROFILE, profile);
+        part.getTransientData().put(ProfilePart.DATA_CORE, name);
+        part.getTransientData().put(ProfilePart.DATA_SYMBOLS, symbols);
+
+        List<MPartStack> stacks = modelService.findElements(application, InspectSessionHandler.STACK_ID,
+                MPartStack.class, null);
+        stacks.get(0).getChildren().add(part);
+        partService.showPart(part, PartState.ACTIVATE);
+    }
+
+    private void setCodeSource(boolean enable) {
+        ElfFile image = processor.getImage();
+        codeSource = (enable && image != null) ? new ImageCodeSource(processor, image) : null;
+    }
+
+    private void verifyCodeSource() {
+        if (codeSource == null)
+            return;
+
+        codeSource.setProcessor(processor);
+        if (codeSource.verify() && codeSource.getImage() == processor.getImage())
+            return;
+
+        if (codeSource.getMismatch() != -1) {
+            MessageDialog.openWarning(instructionViewer.getControl().getShell(), name,
+                    String.format("Code at 0x%x differs from %s, reading code from the simulation again",
+                            codeSource.getMismatch(), codeSource.getImage()));
+        }
+
+        codeSource = null;
+    }
+
     private void createSymbolComboViewer(Composite parent) {
         symbolViewer = new ComboViewer(parent, SWT.NONE);
         symbolViewer.getCombo().setText("enter target address...");
@@ -274,7 +706,10 @@ public class ProcessorPart {
         });
 
         symbolViewer.getControl().setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, false));
-        symbolAutoComplete = new AutoCompleteField(symbolViewer.getControl(), new ComboContentAdapter(), (String[])null);
+        symbolProposals = new ContentProposalAdapter(symbolViewer.getControl(), new ComboContentAdapter(),
+                proposalProvider, null, null);
+        symbolProposals.setPropagateKeys(true);
+        symbolProposals.setProposalAcceptanceStyle(ContentProposalAdapter.PROPOSAL_REPLACE);
     }
 
     public void createInstructionTableViewer(Composite parent) {
@@ -293,7 +728,7 @@ public class ProcessorPart {
 
             @Override
             public void updateElement(int index) {
-                if (instructionViewer.isBusy())
+                if (instructionViewer.isBusy() || !reach(index))
                     return;
 
                 long address = addrOf(index);
@@ -302,6 +737,34 @@ public class ProcessorPart {
             }
         });
 
+        heatColumn = new TableViewerColumn(instructionViewer, SWT.RIGHT);
+        heatColumn.getColumn().setText("Samples");
+        heatColumn.getColumn().setWidth(90);
+        heatColumn.setLabelProvider(new ColumnLabelProvider() {
+            @Override
+            public String getText(Object element) {
+                Profile profile = Profile.getLatest(session);
+                int core = profile != null ? profile.indexOf(name) : -1;
+                if (core < 0)
+                    return "";
+
+                int hits = profile.getHits(core, ((Instruction) element).getAddress());
+                if (hits == 0)
+                    return "";
+                return String.format("%.1f%%", 100.0 * hits / profile.getSampleCount());
+            }
+
+            @Override
+            public Font getFont(Object element) {
+                return Resources.getMonoSpaceFont();
+            }
+
+            @Override
+            public Color getForeground(Object element) {
+                return Display.getDefault().getSystemColor(SWT.COLOR_RED);
+            }
+        });
+
         iconColumn = new TableViewerColumn(instructionViewer, SWT.CENTER);
         iconColumn.getColumn().setText("");
         iconColumn.getColumn().setWidth(50);
@@ -363,7 +826,10 @@ public class ProcessorPart {
         physColumn.setLabelProvider(new ColumnLabelProvider() {
             @Override
             public String getText(Object element) {
-                long addr = ((Instruction) element).getPhysicalAddress();
+                Instruction insn = (Instruction) element;
+                if (!insn.hasPhysicalAddress())
+                    return "";
+                long addr = insn.getPhysicalAddress();
                 String fmt = addr > 0xffffffffl ? "%016x" : "%08x";
                 return String.format(fmt, addr);
             }
@@ -479,6 +945,62 @@ public class ProcessorPart {
         table.addListener(SWT.KeyDown, scrollListener);
         table.addListener(SWT.KeyUp, scrollListener);
         table.getVerticalBar().addListener(SWT.Selection, scrollListener);
+        table.setMenu(buildContextMenu(table));
+    }
+
+    private void createRegisterTableViewer(Composite parent) {
+        registerViewer = new TableViewer(parent, SWT.BORDER | SWT.FULL_SELECTION);
+        registerViewer.setContentProvider(ArrayContentProvider.getInstance());
+
+        TableViewerColumn nameColumn = new TableViewerColumn(registerViewer, SWT.LEFT);
+        nameColumn.getColumn().setText("Register");
+        nameColumn.getColumn().setWidth(80);
+        nameColumn.setLabelProvider(new ColumnLabelProvider() {
+            @Override
+            public String getText(Object element) {
+                return registers.getName((Integer) element);
+            }
+
+            @Override
+            public Font getFont(Object element) {
+                return Resources.getMonoSpaceFont();
+            }
+        });
+
+        TableViewerColumn valueColumn = new TableViewerColumn(registerViewer, SWT.LEFT);
+        valueColumn.getColumn().setText("Value");
+        valueColumn.getColumn().setWidth(150);
+        valueColumn.setLabelProvider(new ColumnLabelProvider() {
+            @Override
+            public String getText(Object element) {
+                long value = registers.getValue((Integer) element);
+                String fmt = value > 0xffffffffl || value < 0 ? "%016x" : "%08x";
+                return String.format(fmt, value);
+            }
+
+            @Override
+            public Font getFont(Object element) {
+                return Resources.getMonoSpaceFont();
+            }
+
+            @Override
+            public Color getForeground(Object element) {
+                if (registers.isChanged((Integer) element))
+                    return Display.getDefault().getSystemColor(SWT.COLOR_RED);
+                return null;
+            }
+        });
+
+        Table table = registerViewer.getTable();
+        table.setHeaderVisible(true);
+        table.setLinesVisible(false);
+    }
+
+    private void updateRegisters() {
+        Integer[] rows = new Integer[registers.size()];
+        for (int i = 0; i < rows.length; i++)
+            rows[i] = i;
+        registerViewer.setInput(rows);
     }
 
     @Inject
@@ -487,6 +1009,26 @@ public class ProcessorPart {
         session = sessionService.getSession();
         processor = (Module) selectionService.getSelection();
         name = processor.getName();
+        registers = new RegisterFile(processor);
+        loader = SymbolLoader.get(session, processor);
+        loader.addListener(symbolListener);
+        symbols = loader.getSymbols();
+    }
+
+    private void attachLoader() {
+        SymbolLoader current = SymbolLoader.get(session, processor);
+        if (current == loader)
+            return;
+
+        loader.removeListener(symbolListener);
+        loader = current;
+        loader.addListener(symbolListener);
+        symbols = loader.getSymbols();
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+        loader.removeListener(symbolListener);
     }
 
     @PostConstruct
@@ -498,7 +1040,12 @@ public class ProcessorPart {
         composite.setLayout(new GridLayout());
 
         createSymbolComboViewer(composite);
-        createInstructionTableViewer(composite);
+
+        SashForm sash = new SashForm(composite, SWT.HORIZONTAL);
+        sash.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true));
+        createInstructionTableViewer(sash);
+        createRegisterTableViewer(sash);
+        sash.setWeights(new int[] { 4, 1 });
 
         refresh();
     }
@@ -517,15 +1064,21 @@ public class ProcessorPart {
 
         table.setEnabled(true);
         processor = service.findModule(session, name);
-        programCounter = getProgramCounter(processor);
+        registers.setProcessor(processor);
+        try {
+            registers.update(session);
+        } catch (SessionException e) {
+            System.err.println("Error fetching registers: " + e.getMessage());
+        }
+
+        programCounter = registers.getProgramCounter();
+        updateRegisters();
+        verifyCodeSource();
         showRange(programCounter);
 
-        symbols = Symbol.findFunctions(processor);
+        attachLoader();
+        loader.load(processor);
         symbolPC = new Symbol(PROGRAM_COUNTER, programCounter, true);
-        symbolNames = new String[symbols.length];
-        for (int i = 0; i < symbols.length; i++)
-            symbolNames[i] = symbols[i].getName();
-        symbolAutoComplete.setProposals(symbolNames);
     }
 
     @Inject
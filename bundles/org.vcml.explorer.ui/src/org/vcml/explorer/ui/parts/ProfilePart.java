@@ -0,0 +1,145 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.explorer.ui.parts;
+
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.eclipse.e4.ui.di.Focus;
+import org.eclipse.e4.ui.model.application.ui.basic.MPart;
+import org.eclipse.jface.layout.TableColumnLayout;
+import org.eclipse.jface.viewers.ArrayContentProvider;
+import org.eclipse.jface.viewers.ColumnLabelProvider;
+import org.eclipse.jface.viewers.ColumnWeightData;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jface.viewers.TableViewerColumn;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Table;
+import org.vcml.explorer.ui.Profile;
+import org.vcml.explorer.ui.Resources;
+import org.vcml.explorer.ui.SymbolIndex;
+
+/**
+ * Flat profile of one processor. The part expects the {@link Profile}, the
+ * processor name and its {@link SymbolIndex} in its transient data.
+ */
+public class ProfilePart {
+
+    public static final String DATA_PROFILE = "profile";
+
+    public static final String DATA_CORE = "core";
+
+    public static final String DATA_SYMBOLS = "symbols";
+
+    private TableViewer viewer;
+
+    private int total;
+
+    private abstract class EntryLabelProvider extends ColumnLabelProvider {
+        protected abstract String getText(Profile.Entry entry);
+
+        @Override
+        public String getText(Object element) {
+            return getText((Profile.Entry) element);
+        }
+
+        @Override
+        public Font getFont(Object element) {
+            return Resources.getMonoSpaceFont();
+        }
+    }
+
+    private void addColumn(TableColumnLayout layout, String title, int weight, int style,
+            EntryLabelProvider provider) {
+        TableViewerColumn column = new TableViewerColumn(viewer, style);
+        column.getColumn().setText(title);
+        column.setLabelProvider(provider);
+        layout.setColumnData(column.getColumn(), new ColumnWeightData(weight, 60, true));
+    }
+
+    @PostConstruct
+    public void createComposite(Composite parent, MPart part) {
+        Profile profile = (Profile) part.getTransientData().get(DATA_PROFILE);
+        String core = (String) part.getTransientData().get(DATA_CORE);
+        SymbolIndex symbols = (SymbolIndex) part.getTransientData().get(DATA_SYMBOLS);
+
+        parent.setLayout(new GridLayout());
+        Composite composite = new Composite(parent, SWT.NONE);
+        composite.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true));
+
+        viewer = new TableViewer(composite, SWT.BORDER | SWT.FULL_SELECTION);
+        viewer.setContentProvider(ArrayContentProvider.getInstance());
+
+        TableColumnLayout layout = new TableColumnLayout();
+        addColumn(layout, "Symbol", 4, SWT.LEFT, new EntryLabelProvider() {
+            @Override
+            protected String getText(Profile.Entry entry) {
+                return entry.getSymbol() != null ? entry.getSymbol() : "<unknown>";
+            }
+        });
+
+        addColumn(layout, "Address", 2, SWT.LEFT, new EntryLabelProvider() {
+            @Override
+            protected String getText(Profile.Entry entry) {
+                long addr = entry.getAddress();
+                return String.format(addr > 0xffffffffl || addr < 0 ? "%016x" : "%08x", addr);
+            }
+        });
+
+        addColumn(layout, "Samples", 1, SWT.RIGHT, new EntryLabelProvider() {
+            @Override
+            protected String getText(Profile.Entry entry) {
+                return Integer.toString(entry.getHits());
+            }
+        });
+
+        addColumn(layout, "Percent", 1, SWT.RIGHT, new EntryLabelProvider() {
+            @Override
+            protected String getText(Profile.Entry entry) {
+                return String.format("%.2f%%", 100.0 * entry.getHits() / Math.max(total, 1));
+            }
+        });
+
+        composite.setLayout(layout);
+        Table table = viewer.getTable();
+        table.setHeaderVisible(true);
+        table.setLinesVisible(true);
+
+        int idx = profile != null ? profile.indexOf(core) : -1;
+        if (idx < 0)
+            return;
+
+        List<Profile.Entry> entries = profile.getFlatProfile(idx, symbols != null ? symbols : SymbolIndex.EMPTY);
+        total = profile.getSampleCount();
+        viewer.setInput(entries);
+    }
+
+    @Focus
+    public void setFocus() {
+        viewer.getControl().setFocus();
+    }
+
+}
@@ -0,0 +1,281 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.explorer.ui.parts;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+
+import org.eclipse.e4.core.di.annotations.Optional;
+import org.eclipse.e4.ui.di.Focus;
+import org.eclipse.e4.ui.di.UIEventTopic;
+import org.eclipse.jface.layout.TableColumnLayout;
+import org.eclipse.jface.viewers.ArrayContentProvider;
+import org.eclipse.jface.viewers.ColumnLabelProvider;
+import org.eclipse.jface.viewers.ColumnWeightData;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jface.viewers.TableViewerColumn;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Table;
+import org.vcml.explorer.ui.Instruction;
+import org.vcml.explorer.ui.RegisterFile;
+import org.vcml.explorer.ui.Resources;
+import org.vcml.explorer.ui.services.ISessionService;
+import org.vcml.session.Module;
+import org.vcml.session.Session;
+import org.vcml.session.SessionException;
+
+public class SmpPart {
+
+    public static final String[] KINDS = { Module.KIND_VCML_PROCESSOR, Module.KIND_SIMV_HART, Module.KIND_SIMA_CORE,
+            Module.KIND_USIMA_CORE };
+
+    private ISessionService service;
+
+    private Session session;
+
+    private List<Module> processors = new ArrayList<Module>();
+
+    private List<RegisterFile> registers = new ArrayList<RegisterFile>();
+
+    private Instruction[] current = new Instruction[0];
+
+    private TableViewer viewer;
+
+    private static boolean isProcessor(Module module) {
+        for (String kind : KINDS)
+            if (kind.equals(module.getKind()))
+                return true;
+        return false;
+    }
+
+    private static void findProcessors(Module[] modules, List<Module> result) {
+        for (Module module : modules) {
+            if (isProcessor(module))
+                result.add(module);
+            findProcessors(module.getChildren(), result);
+        }
+    }
+
+    public static List<Module> findProcessors(Session session) throws SessionException {
+        List<Module> result = new ArrayList<Module>();
+        findProcessors(session.getTopLevelObjects(), result);
+        return result;
+    }
+
+    private abstract class RowLabelProvider extends ColumnLabelProvider {
+        protected abstract String getText(int row);
+
+        @Override
+        public String getText(Object element) {
+            return getText((int) (Integer) element);
+        }
+
+        @Override
+        public Font getFont(Object element) {
+            return Resources.getMonoSpaceFont();
+        }
+    }
+
+    private void addColumn(TableColumnLayout layout, String title, int weight, RowLabelProvider provider) {
+        TableViewerColumn column = new TableViewerColumn(viewer, SWT.NONE);
+        column.getColumn().setText(title);
+        column.setLabelProvider(provider);
+        layout.setColumnData(column.getColumn(), new ColumnWeightData(weight, 80, true));
+    }
+
+    private static String format(long address) {
+        return String.format(address > 0xffffffffl || address < 0 ? "%016x" : "%08x", address);
+    }
+
+    /**
+     * Fetches the registers of all processors in one pipelined burst and then
+     * disassembles the instruction at each program counter in a second one,
+     * so a stop costs two round trips for up to
+     * {@link org.vcml.session.Protocol#PIPELINE_DEPTH} processors.
+     */
+    private void update() throws SessionException {
+        boolean stale = current.length != registers.size();
+        for (RegisterFile file : registers)
+            stale |= !file.isCurrent(session);
+        if (!stale)
+            return;
+
+        RegisterFile.updateAll(session, registers);
+
+        List<String[]> args = new ArrayList<String[]>();
+        for (RegisterFile file : registers) {
+            long pc = file.getProgramCounter();
+            args.add(new String[] { Instruction.CMD_DISASSEMBLE, Long.toUnsignedString(pc),
+                    Long.toUnsignedString(pc + 1) });
+        }
+
+        String[] replies = session.execute(processors, args);
+        current = new Instruction[replies.length];
+        for (int i = 0; i < replies.length; i++) {
+            long pc = registers.get(i).getProgramCounter();
+            List<Instruction> block = replies[i] != null ? Instruction.parse(replies[i], pc)
+                    : new ArrayList<Instruction>();
+            current[i] = block.isEmpty() ? null : block.get(0);
+        }
+    }
+
+    @Inject
+    public SmpPart(ISessionService sessionService) {
+        service = sessionService;
+        session = sessionService.getSession();
+    }
+
+    @PostConstruct
+    public void createComposite(Composite parent) {
+        parent.setLayout(new GridLayout());
+        Composite composite = new Composite(parent, SWT.NONE);
+        composite.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true));
+
+        viewer = new TableViewer(composite, SWT.BORDER | SWT.FULL_SELECTION);
+        viewer.setContentProvider(ArrayContentProvider.getInstance());
+
+        TableColumnLayout layout = new TableColumnLayout();
+        addColumn(layout, "Processor", 3, new RowLabelProvider() {
+            @Override
+            protected String getText(int row) {
+                return processors.get(row).getName();
+            }
+
+            @Override
+            public Font getFont(Object element) {
+                return null;
+            }
+        });
+
+        addColumn(layout, "Program Counter", 2, new RowLabelProvider() {
+            @Override
+            protected String getText(int row) {
+                return format(registers.get(row).getProgramCounter());
+            }
+
+            @Override
+            public Color getForeground(Object element) {
+                return Display.getDefault().getSystemColor(SWT.COLOR_DARK_YELLOW);
+            }
+        });
+
+        addColumn(layout, "Symbol", 3, new RowLabelProvider() {
+            @Override
+            protected String getText(int row) {
+                Instruction insn = row < current.length ? current[row] : null;
+                return insn != null && insn.getSymbol() != null ? insn.getSymbol() : "";
+            }
+
+            @Override
+            public Color getForeground(Object element) {
+                return Display.getDefault().getSystemColor(SWT.COLOR_DARK_GRAY);
+            }
+        });
+
+        addColumn(layout, "Instruction", 2, new RowLabelProvider() {
+            @Override
+            protected String getText(int row) {
+                Instruction insn = row < current.length ? current[row] : null;
+                return insn != null ? insn.getInstruction() : ProcessorPart.ERROR_CELL;
+            }
+
+            @Override
+            public Color getForeground(Object element) {
+                return Display.getDefault().getSystemColor(SWT.COLOR_DARK_RED);
+            }
+        });
+
+        addColumn(layout, "Disassembly", 4, new RowLabelProvider() {
+            @Override
+            protected String getText(int row) {
+                Instruction insn = row < current.length ? current[row] : null;
+                return insn != null ? insn.getDisassembly() : ProcessorPart.ERROR_CELL;
+            }
+
+            @Override
+            public Color getForeground(Object element) {
+                return Display.getDefault().getSystemColor(SWT.COLOR_DARK_BLUE);
+            }
+        });
+
+        composite.setLayout(layout);
+        Table table = viewer.getTable();
+        table.setHeaderVisible(true);
+        table.setLinesVisible(true);
+
+        refresh();
+    }
+
+    @Focus
+    public void setFocus() {
+        viewer.getControl().setFocus();
+    }
+
+    public void refresh() {
+        Table table = viewer.getTable();
+        if (!session.isConnected() || session.isRunning()) {
+            table.setEnabled(false);
+            return;
+        }
+
+        try {
+            List<Module> found = findProcessors(session);
+            if (!found.equals(processors)) {
+                processors = found;
+                registers = new ArrayList<RegisterFile>();
+                for (Module processor : processors)
+                    registers.add(new RegisterFile(processor));
+            } else {
+                for (int i = 0; i < processors.size(); i++)
+                    registers.get(i).setProcessor(found.get(i));
+                processors = found;
+            }
+
+            update();
+        } catch (SessionException e) {
+            service.reportSessionError(session, e);
+        }
+
+        Integer[] rows = new Integer[processors.size()];
+        for (int i = 0; i < rows.length; i++)
+            rows[i] = i;
+
+        table.setEnabled(true);
+        viewer.setInput(rows);
+    }
+
+    @Inject
+    @Optional
+    public void sessionChanged(@UIEventTopic(ISessionService.TOPIC_SESSION_ANY) Session current) {
+        if (session == current)
+            refresh();
+    }
+
+}
@@ -190,4 +190,20 @@ public class TerminalPart {
     public void setWordWrap(boolean wrap) {
         terminalViewer.getText().setWordWrap(wrap);
     }
+
+    public void sendFile(Terminal term) {
+        terminalViewer.sendFile(term);
+    }
+
+    public boolean isRecording(Terminal term) {
+        return terminalViewer.isRecording(term);
+    }
+
+    public void setRecording(Terminal term, boolean recording) {
+        terminalViewer.setRecording(term, recording);
+    }
+
+    public void replayMacro(Terminal term) {
+        terminalViewer.replayMacro(term);
+    }
 }
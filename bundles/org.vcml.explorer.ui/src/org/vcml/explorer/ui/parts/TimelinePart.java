@@ -0,0 +1,170 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.explorer.ui.parts;
+
+import java.text.SimpleDateFormat;
+import java.time.LocalTime;
+import java.util.Date;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.eclipse.e4.core.di.annotations.Optional;
+import org.eclipse.e4.ui.di.Focus;
+import org.eclipse.e4.ui.di.UIEventTopic;
+import org.eclipse.e4.ui.model.application.ui.basic.MPart;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.swt.widgets.TableItem;
+import org.vcml.explorer.ui.Resources;
+import org.vcml.explorer.ui.services.ISessionService;
+import org.vcml.explorer.ui.terminal.TerminalTimeline;
+import org.vcml.session.Session;
+
+/**
+ * Merged output of all terminals attached to a {@link TerminalTimeline},
+ * which the part expects in its transient data. The table is virtual, so
+ * only the visible lines are ever materialized.
+ */
+public class TimelinePart {
+
+    public static final String DATA_TIMELINE = "timeline";
+
+    public static final int REFRESH_MILLIS = 250;
+
+    private static final SimpleDateFormat TIME_FORMAT = new SimpleDateFormat("HH:mm:ss.SSS");
+
+    private TerminalTimeline timeline;
+
+    private Table table;
+
+    private Button followButton;
+
+    private Label statusLabel;
+
+    private long first = 0;
+
+    private Runnable refresher = new Runnable() {
+        @Override
+        public void run() {
+            if (table.isDisposed())
+                return;
+
+            refresh();
+            table.getDisplay().timerExec(REFRESH_MILLIS, this);
+        }
+    };
+
+    private static String formatSimTime(long nanos) {
+        LocalTime time = LocalTime.ofNanoOfDay(nanos);
+        return String.format("%02d:%02d:%02d.%09d", time.getHour(), time.getMinute(), time.getSecond(),
+                time.getNano());
+    }
+
+    private void refresh() {
+        if (timeline.merge() == 0 && timeline.getFirstLine() == first)
+            return;
+
+        if (timeline.getFirstLine() != first) {
+            first = timeline.getFirstLine();
+            table.clearAll();
+        }
+
+        int lines = timeline.getLineCount();
+        table.setItemCount(lines);
+        if (followButton.getSelection() && lines > 0)
+            table.setTopIndex(lines - 1);
+
+        statusLabel.setText(String.format("%d lines from %d terminals", lines, timeline.getStreamCount()));
+    }
+
+    private TableColumn addColumn(String title, int width) {
+        TableColumn column = new TableColumn(table, SWT.LEFT);
+        column.setText(title);
+        column.setWidth(width);
+        return column;
+    }
+
+    @PostConstruct
+    public void createComposite(Composite parent, MPart part) {
+        timeline = (TerminalTimeline) part.getTransientData().get(DATA_TIMELINE);
+        parent.setLayout(new GridLayout(2, false));
+
+        followButton = new Button(parent, SWT.CHECK);
+        followButton.setText("Follow output");
+        followButton.setSelection(true);
+
+        statusLabel = new Label(parent, SWT.NONE);
+        statusLabel.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+
+        table = new Table(parent, SWT.VIRTUAL | SWT.BORDER | SWT.FULL_SELECTION | SWT.MULTI);
+        table.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true, 2, 1));
+        table.setHeaderVisible(true);
+        table.setFont(Resources.getMonoSpaceFont());
+
+        addColumn("Sim Time", 150);
+        addColumn("Wall Time", 100);
+        addColumn("Terminal", 120);
+        addColumn("Output", 600);
+
+        table.addListener(SWT.SetData, event -> {
+            TableItem item = (TableItem) event.item;
+            long line = first + table.indexOf(item);
+            String text = timeline.getText(line);
+            item.setText(0, formatSimTime(timeline.getSimTime(line)));
+            item.setText(1, TIME_FORMAT.format(new Date(timeline.getWallTime(line))));
+            item.setText(2, timeline.getStreamName(line));
+            item.setText(3, text != null ? text : "<dropped>");
+        });
+
+        if (timeline == null)
+            return;
+
+        refresh();
+        table.getDisplay().timerExec(REFRESH_MILLIS, refresher);
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+        if (timeline != null)
+            TerminalTimeline.remove(timeline);
+    }
+
+    @Focus
+    public void setFocus() {
+        table.setFocus();
+    }
+
+    @Inject
+    @Optional
+    public void sessionChanged(@UIEventTopic(ISessionService.TOPIC_SESSION_ANY) Session current) {
+        if (timeline != null && timeline.getSession() == current && !current.isConnected())
+            TerminalTimeline.remove(timeline);
+    }
+
+}
@@ -19,7 +19,10 @@
 
 package org.vcml.explorer.ui.parts;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -28,16 +31,40 @@ import javax.inject.Inject;
 import org.eclipse.e4.core.di.annotations.Optional;
 import org.eclipse.e4.ui.di.Focus;
 import org.eclipse.e4.ui.di.UIEventTopic;
+import org.eclipse.e4.ui.model.application.MApplication;
+import org.eclipse.e4.ui.model.application.ui.basic.MBasicFactory;
+import org.eclipse.e4.ui.model.application.ui.basic.MPart;
+import org.eclipse.e4.ui.model.application.ui.basic.MPartStack;
+import org.eclipse.e4.ui.workbench.modeling.EModelService;
+import org.eclipse.e4.ui.workbench.modeling.EPartService;
+import org.eclipse.e4.ui.workbench.modeling.EPartService.PartState;
 import org.eclipse.e4.ui.workbench.modeling.ESelectionService;
+import org.eclipse.jface.dialogs.IInputValidator;
+import org.eclipse.jface.dialogs.InputDialog;
 import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.jface.window.Window;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.StyledText;
 import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.widgets.Caret;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.DirectoryDialog;
 import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Menu;
+import org.eclipse.swt.widgets.MenuItem;
+import org.vcml.explorer.ui.dialogs.TerminalLogDialog;
+import org.vcml.explorer.ui.dialogs.TriggerHitsDialog;
+import org.vcml.explorer.ui.handlers.InspectSessionHandler;
 import org.vcml.explorer.ui.services.ISessionService;
 import org.vcml.explorer.ui.terminal.NetTerminal;
+import org.vcml.explorer.ui.terminal.TerminalBuffer;
+import org.vcml.explorer.ui.terminal.TerminalLog;
+import org.vcml.explorer.ui.terminal.TerminalMacro;
+import org.vcml.explorer.ui.terminal.TerminalTimeline;
+import org.vcml.explorer.ui.terminal.Trigger;
+import org.vcml.explorer.ui.terminal.TriggerEngine;
 import org.vcml.explorer.ui.terminal.TerminalViewer;
 import org.vcml.session.Module;
 import org.vcml.session.Session;
@@ -45,8 +72,14 @@ import org.vcml.session.SessionException;
 
 public class UartPart {
 
+    public static final String TIMELINE_URI = "bundleclass://org.vcml.explorer.ui/org.vcml.explorer.ui.parts.TimelinePart";
+
+    public static final String TIMELINE_ICON_URI = "platform:/plugin/org.vcml.explorer.ui/icons/consoles.png";
+
     private Session session = null;
 
+    private ISessionService service = null;
+
     private Module uart = null;
 
     private NetTerminal terminal = null;
@@ -59,6 +92,15 @@ public class UartPart {
 
     private String backend = "";
 
+    @Inject
+    private EPartService partService;
+
+    @Inject
+    private EModelService modelService;
+
+    @Inject
+    private MApplication application;
+
     private int port = -1;
 
     public int getPort() {
@@ -113,9 +155,248 @@ public class UartPart {
         }
     }
 
+    private void startLogging() {
+        TerminalBuffer buffer = viewer.getBuffer(terminal);
+        DirectoryDialog dialog = new DirectoryDialog(viewer.getShell());
+        dialog.setText("Log output of " + uart.getName());
+        String path = dialog.open();
+        if (path == null)
+            return;
+
+        try {
+            buffer.setLog(new TerminalLog(new File(path), uart.getName()));
+        } catch (IOException e) {
+            MessageDialog.openError(viewer.getShell(), uart.getName(), "Cannot log to " + path + ": " + e.getMessage());
+        }
+    }
+
+    private static List<Trigger> parseTriggers(String text) {
+        List<Trigger> triggers = new ArrayList<Trigger>();
+        for (String line : text.split("\n"))
+            if (!line.trim().isEmpty() && !line.trim().startsWith("#"))
+                triggers.add(Trigger.parse(line));
+        return triggers;
+    }
+
+    private IInputValidator triggerValidator = new IInputValidator() {
+        @Override
+        public String isValid(String text) {
+            try {
+                parseTriggers(text);
+                return null;
+            } catch (IllegalArgumentException e) {
+                return e.getMessage();
+            }
+        }
+    };
+
+    private void editTriggers() {
+        TerminalBuffer buffer = viewer.getBuffer(terminal);
+        TriggerEngine engine = buffer.getTriggers();
+
+        StringBuilder text = new StringBuilder();
+        if (engine != null) {
+            for (Trigger trigger : engine.getTriggers())
+                text.append(trigger).append('\n');
+        }
+
+        InputDialog dialog = new InputDialog(viewer.getShell(), uart.getName(),
+                "One trigger per line: stop|log \"text\" or /regex/, command \"text\" <module> <command> [args]",
+                text.toString(), triggerValidator) {
+            @Override
+            protected int getInputTextStyle() {
+                return SWT.MULTI | SWT.BORDER | SWT.V_SCROLL;
+            }
+        };
+
+        if (dialog.open() != Window.OK)
+            return;
+
+        List<Trigger> triggers = parseTriggers(dialog.getValue());
+        if (triggers.isEmpty()) {
+            buffer.setTriggers(null);
+            return;
+        }
+
+        if (engine == null) {
+            engine = new TriggerEngine(session, service);
+            engine.setTriggers(triggers);
+            buffer.setTriggers(engine);
+        } else {
+            engine.setTriggers(triggers);
+        }
+    }
+
+    private void showTimeline(TerminalTimeline timeline) {
+        String partId = "timeline:" + session.toString();
+        MPart part = partService.findPart(partId);
+        if (part != null && part.getTransientData().get(TimelinePart.DATA_TIMELINE) != timeline) {
+            partService.hidePart(part, true); // still shows a removed timeline
+            part = null;
+        }
+
+        if (part == null) {
+            part = MBasicFactory.INSTANCE.createPart();
+            part.setLabel("Timeline of " + session.getName());
+            part.setContributionURI(TIMELINE_URI);
+            part.setCloseable(true);
+            part.setElementId(partId);
+            part.setIconURI(TIMELINE_ICON_URI);
+            part.getTransientData().put(TimelinePart.DATA_TIMELINE, timeline);
+
+            List<MPartStack> stacks = modelService.findElements(application, InspectSessionHandler.STACK_ID,
+                    MPartStack.class, null);
+            stacks.get(0).getChildren().add(part);
+        }
+
+        partService.showPart(part, PartState.VISIBLE);
+    }
+
+    private void setTimeline(boolean enable) {
+        TerminalBuffer buffer = viewer.getBuffer(terminal);
+        if (!enable) {
+            buffer.setTimeline(null);
+            return;
+        }
+
+        TerminalTimeline timeline = TerminalTimeline.get(session);
+        buffer.setTimeline(timeline.addStream(uart.getName()));
+        showTimeline(timeline);
+    }
+
+    private Menu buildContextMenu() {
+        Menu menu = new Menu(viewer.getText());
+        MenuItem startItem = new MenuItem(menu, SWT.NONE);
+        startItem.setText("Start Logging...");
+        startItem.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                startLogging();
+            }
+        });
+
+        MenuItem stopItem = new MenuItem(menu, SWT.NONE);
+        stopItem.setText("Stop Logging");
+        stopItem.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                viewer.getBuffer(terminal).setLog(null);
+            }
+        });
+
+        MenuItem searchItem = new MenuItem(menu, SWT.NONE);
+        searchItem.setText("Search Log...");
+        searchItem.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                TerminalLog log = viewer.getBuffer(terminal).getLog();
+                if (log != null)
+                    new TerminalLogDialog(viewer.getShell(), log).open();
+            }
+        });
+
+        MenuItem timelineItem = new MenuItem(menu, SWT.CHECK);
+        timelineItem.setText("Show in Timeline");
+        timelineItem.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                setTimeline(timelineItem.getSelection());
+            }
+        });
+
+        new MenuItem(menu, SWT.SEPARATOR);
+
+        MenuItem triggerItem = new MenuItem(menu, SWT.NONE);
+        triggerItem.setText("Edit Triggers...");
+        triggerItem.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                editTriggers();
+            }
+        });
+
+        MenuItem hitsItem = new MenuItem(menu, SWT.NONE);
+        hitsItem.setText("Show Trigger Hits...");
+        hitsItem.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                TriggerEngine engine = viewer.getBuffer(terminal).getTriggers();
+                if (engine != null)
+                    new TriggerHitsDialog(viewer.getShell(), uart.getName(), engine).open();
+            }
+        });
+
+        new MenuItem(menu, SWT.SEPARATOR);
+
+        MenuItem sendItem = new MenuItem(menu, SWT.NONE);
+        sendItem.setText("Send File...");
+        sendItem.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                viewer.sendFile(terminal);
+            }
+        });
+
+        MenuItem recordItem = new MenuItem(menu, SWT.CHECK);
+        recordItem.setText("Record Macro");
+        recordItem.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                viewer.setRecording(terminal, recordItem.getSelection());
+            }
+        });
+
+        MenuItem replayItem = new MenuItem(menu, SWT.NONE);
+        replayItem.setText("Replay Macro");
+        replayItem.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                viewer.replayMacro(terminal);
+            }
+        });
+
+        MenuItem loadItem = new MenuItem(menu, SWT.NONE);
+        loadItem.setText("Load Macro...");
+        loadItem.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                viewer.loadMacro();
+            }
+        });
+
+        MenuItem saveItem = new MenuItem(menu, SWT.NONE);
+        saveItem.setText("Save Macro...");
+        saveItem.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                viewer.saveMacro();
+            }
+        });
+
+        menu.addListener(SWT.Show, event -> {
+            TerminalBuffer buffer = terminal != null ? viewer.getBuffer(terminal) : null;
+            startItem.setEnabled(buffer != null);
+            stopItem.setEnabled(buffer != null && buffer.getLog() != null);
+            searchItem.setEnabled(buffer != null && buffer.getLog() != null);
+            timelineItem.setEnabled(buffer != null);
+            timelineItem.setSelection(
+                    buffer != null && buffer.getTimeline() != null && !buffer.getTimeline().isDisposed());
+            triggerItem.setEnabled(buffer != null);
+            hitsItem.setEnabled(buffer != null && buffer.getTriggers() != null);
+            sendItem.setEnabled(buffer != null);
+            recordItem.setEnabled(buffer != null);
+            recordItem.setSelection(buffer != null && buffer.getRecorder() != null);
+            replayItem.setEnabled(buffer != null);
+            saveItem.setEnabled(TerminalMacro.getLatest() != null);
+        });
+
+        return menu;
+    }
+
     @PostConstruct
     public void createComposite(Composite parent, ISessionService sessionService, ESelectionService selectionService) {
         session = sessionService.getSession();
+        service = sessionService;
         uart = (Module) selectionService.getSelection();
 
         viewer = new TerminalViewer(parent);
@@ -139,6 +420,7 @@ public class UartPart {
         try {
             terminal = new NetTerminal(name, host, port);
             viewer.setTerminal(terminal);
+            viewer.getText().setMenu(buildContextMenu());
         } catch (IOException e) {
             MessageDialog.openError(parent.getShell(), uart.getName(),
                     "Cannot connect to " + uart.getName() + ": " + e.getMessage());
@@ -149,8 +431,10 @@ public class UartPart {
 
     @PreDestroy
     public void preDestroy() {
-        if (terminal != null)
+        if (terminal != null) {
+            viewer.removeBuffer(terminal);
             terminal.close();
+        }
 
         try {
             if (!backend.isEmpty() && uart.getSession().isConnected())
@@ -125,6 +125,13 @@ public interface ISessionService {
      */
     public void stopSimulation(Session session);
 
+    /**
+     * Announces that the state of <tt>session</tt> was changed outside of this
+     * service, e.g. stopped by a background thread. Must be called from the UI
+     * thread.
+     */
+    public void sessionChanged(Session session);
+
     /**
      * Steps the simulation for a single quantum.
      */
@@ -35,6 +35,7 @@ import org.eclipse.e4.ui.workbench.UIEvents;
 import org.eclipse.jface.dialogs.MessageDialog;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.ui.progress.UIJob;
+import org.vcml.explorer.ui.SymbolLoader;
 import org.vcml.session.Module;
 import org.vcml.session.Session;
 import org.vcml.session.SessionException;
@@ -149,6 +150,7 @@ public class SessionService implements ISessionService {
             if (session.isRunning())
                 stopSimulation(session);
             session.disconnect();
+            SymbolLoader.remove(session);
             updateSession(session, TOPIC_SESSION_UPDATED);
         } catch (SessionException e) {
             reportSessionError(session, e);
@@ -182,6 +184,12 @@ public class SessionService implements ISessionService {
         }
     }
 
+    @Override
+    public void sessionChanged(Session session) {
+        if (session != null && sessions.contains(session))
+            updateSession(session, TOPIC_SESSION_UPDATED);
+    }
+
     @Override
     public void stepSimulation(Session session) {
         try {
@@ -208,6 +216,7 @@ public class SessionService implements ISessionService {
                 stopSimulation(session);
             session.quitSimulation();
             session.disconnect();
+            SymbolLoader.remove(session);
             removeSession(session);
         } catch (SessionException e) {
             reportSessionError(session, e);
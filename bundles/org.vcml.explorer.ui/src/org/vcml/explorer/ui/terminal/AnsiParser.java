@@ -0,0 +1,236 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.explorer.ui.terminal;
+
+/**
+ * Table driven parser for DEC/ANSI escape sequences, following the VT500
+ * state diagram. The parser does not allocate while feeding: parameters are
+ * collected into a fixed array and handed to the {@link Handler} when the
+ * final character of a sequence arrives. OSC, DCS and similar strings are
+ * consumed and dropped.
+ */
+public class AnsiParser {
+
+    public interface Handler {
+
+        public void print(char character);
+
+        public void execute(char control);
+
+        public void escDispatch(char code, char intermediate);
+
+        public void csiDispatch(char code, char marker, char intermediate, int[] params, int count);
+
+    }
+
+    public static final int MAX_PARAMS = 16;
+
+    public static final int MAX_PARAM_VALUE = 9999;
+
+    private static final int GROUND = 0;
+    private static final int ESCAPE = 1;
+    private static final int ESCAPE_INTERMEDIATE = 2;
+    private static final int CSI_ENTRY = 3;
+    private static final int CSI_PARAM = 4;
+    private static final int CSI_INTERMEDIATE = 5;
+    private static final int CSI_IGNORE = 6;
+    private static final int OSC_STRING = 7;
+    private static final int STRING_IGNORE = 8;
+    private static final int STATES = 9;
+
+    private static final int NONE = 0;
+    private static final int PRINT = 1;
+    private static final int EXECUTE = 2;
+    private static final int CLEAR = 3;
+    private static final int COLLECT = 4;
+    private static final int PARAM = 5;
+    private static final int ESC_DISPATCH = 6;
+    private static final int CSI_DISPATCH = 7;
+
+    /** Transition table indexed by state and 7-bit character: action << 4 | next state */
+    private static final byte[] TABLE = new byte[STATES * 128];
+
+    private static void set(int state, int from, int to, int action, int next) {
+        for (int c = from; c <= to; c++)
+            TABLE[state * 128 + c] = (byte) (action << 4 | next);
+    }
+
+    private static void executeControls(int state) {
+        set(state, 0x00, 0x17, EXECUTE, state);
+        set(state, 0x19, 0x19, EXECUTE, state);
+        set(state, 0x1c, 0x1f, EXECUTE, state);
+    }
+
+    static {
+        for (int state = 0; state < STATES; state++)
+            set(state, 0x00, 0x7f, NONE, state);
+
+        executeControls(GROUND);
+        set(GROUND, 0x20, 0x7e, PRINT, GROUND);
+
+        executeControls(ESCAPE);
+        set(ESCAPE, 0x20, 0x2f, COLLECT, ESCAPE_INTERMEDIATE);
+        set(ESCAPE, 0x30, 0x7e, ESC_DISPATCH, GROUND);
+        set(ESCAPE, '[', '[', NONE, CSI_ENTRY);
+        set(ESCAPE, ']', ']', NONE, OSC_STRING);
+        set(ESCAPE, 'P', 'P', NONE, STRING_IGNORE);
+        set(ESCAPE, 'X', 'X', NONE, STRING_IGNORE);
+        set(ESCAPE, '^', '_', NONE, STRING_IGNORE);
+
+        executeControls(ESCAPE_INTERMEDIATE);
+        set(ESCAPE_INTERMEDIATE, 0x20, 0x2f, COLLECT, ESCAPE_INTERMEDIATE);
+        set(ESCAPE_INTERMEDIATE, 0x30, 0x7e, ESC_DISPATCH, GROUND);
+
+        executeControls(CSI_ENTRY);
+        set(CSI_ENTRY, 0x20, 0x2f, COLLECT, CSI_INTERMEDIATE);
+        set(CSI_ENTRY, 0x30, 0x39, PARAM, CSI_PARAM);
+        set(CSI_ENTRY, 0x3a, 0x3a, NONE, CSI_IGNORE);
+        set(CSI_ENTRY, 0x3b, 0x3b, PARAM, CSI_PARAM);
+        set(CSI_ENTRY, 0x3c, 0x3f, COLLECT, CSI_PARAM);
+        set(CSI_ENTRY, 0x40, 0x7e, CSI_DISPATCH, GROUND);
+
+        executeControls(CSI_PARAM);
+        set(CSI_PARAM, 0x20, 0x2f, COLLECT, CSI_INTERMEDIATE);
+        set(CSI_PARAM, 0x30, 0x39, PARAM, CSI_PARAM);
+        set(CSI_PARAM, 0x3a, 0x3a, NONE, CSI_IGNORE);
+        set(CSI_PARAM, 0x3b, 0x3b, PARAM, CSI_PARAM);
+        set(CSI_PARAM, 0x3c, 0x3f, NONE, CSI_IGNORE);
+        set(CSI_PARAM, 0x40, 0x7e, CSI_DISPATCH, GROUND);
+
+        executeControls(CSI_INTERMEDIATE);
+        set(CSI_INTERMEDIATE, 0x20, 0x2f, COLLECT, CSI_INTERMEDIATE);
+        set(CSI_INTERMEDIATE, 0x30, 0x3f, NONE, CSI_IGNORE);
+        set(CSI_INTERMEDIATE, 0x40, 0x7e, CSI_DISPATCH, GROUND);
+
+        executeControls(CSI_IGNORE);
+        set(CSI_IGNORE, 0x40, 0x7e, NONE, GROUND);
+
+        set(OSC_STRING, 0x07, 0x07, NONE, GROUND);
+
+        // valid from every state: cancel, substitute and escape
+        for (int state = 0; state < STATES; state++) {
+            set(state, 0x18, 0x18, EXECUTE, GROUND);
+            set(state, 0x1a, 0x1a, EXECUTE, GROUND);
+            set(state, 0x1b, 0x1b, CLEAR, ESCAPE);
+        }
+    }
+
+    private Handler handler;
+
+    private int state = GROUND;
+
+    private int[] params = new int[MAX_PARAMS];
+
+    private int count;
+
+    private char marker;
+
+    private char intermediate;
+
+    private void clear() {
+        count = 0;
+        marker = 0;
+        intermediate = 0;
+    }
+
+    private void collect(char c) {
+        if (c >= 0x3c && c <= 0x3f)
+            marker = c;
+        else if (intermediate == 0)
+            intermediate = c;
+    }
+
+    private void param(char c) {
+        if (count == 0)
+            params[count++] = 0;
+
+        if (c == ';') {
+            if (count < MAX_PARAMS)
+                params[count++] = 0;
+            return;
+        }
+
+        int value = params[count - 1] * 10 + (c - '0');
+        params[count - 1] = Math.min(value, MAX_PARAM_VALUE);
+    }
+
+    public AnsiParser(Handler handler) {
+        this.handler = handler;
+    }
+
+    public void reset() {
+        state = GROUND;
+        clear();
+    }
+
+    public void feed(char c) {
+        if (c >= 0x80) {
+            if (state == GROUND)
+                handler.print(c);
+            return;
+        }
+
+        int entry = TABLE[state * 128 + c];
+        state = entry & 0xf;
+
+        switch (entry >> 4) {
+        case PRINT:
+            handler.print(c);
+            break;
+
+        case EXECUTE:
+            handler.execute(c);
+            break;
+
+        case CLEAR:
+            clear();
+            break;
+
+        case COLLECT:
+            collect(c);
+            break;
+
+        case PARAM:
+            param(c);
+            break;
+
+        case ESC_DISPATCH:
+            handler.escDispatch(c, intermediate);
+            break;
+
+        case CSI_DISPATCH:
+            handler.csiDispatch(c, marker, intermediate, params, count);
+            break;
+
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Returns parameter <tt>idx</tt>, or <tt>fallback</tt> if it is missing
+     * or zero, as most sequences treat zero like an omitted parameter.
+     */
+    public static int param(int[] params, int count, int idx, int fallback) {
+        return (idx < count && params[idx] != 0) ? params[idx] : fallback;
+    }
+
+}
@@ -23,13 +23,27 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
-import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
 
+/**
+ * Terminal connected to a TCP socket. After connecting, the channel is
+ * switched to non-blocking mode and read by {@link TerminalReactor}, so many
+ * network terminals share a single thread. Writers that find the socket
+ * buffer full wait on a private selector until the peer drains it.
+ */
 public class NetTerminal extends Terminal {
 
     public static final int TIMEOUT_MS = 1000;
 
-    private Socket socket;
+    public static final int WRITE_TIMEOUT_MS = 5000;
+
+    private SocketChannel channel;
+
+    private Selector writable;
 
     private InputStream rx;
 
@@ -37,16 +51,76 @@ public class NetTerminal extends Terminal {
 
     public NetTerminal(String name, String host, int port) throws IOException {
         super(name, false);
-        socket = new Socket();
-        socket.connect(new InetSocketAddress(host, port), TIMEOUT_MS);
-        rx = socket.getInputStream();
-        tx = socket.getOutputStream();
+        channel = SocketChannel.open();
+        try {
+            channel.socket().connect(new InetSocketAddress(host, port), TIMEOUT_MS);
+            channel.configureBlocking(false);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        rx = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException(getName() + " is non-blocking, read its channel instead");
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        };
+
+        tx = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public synchronized void write(byte[] b, int off, int len) throws IOException {
+                ByteBuffer data = ByteBuffer.wrap(b, off, len);
+                while (data.hasRemaining()) {
+                    if (channel.write(data) == 0)
+                        awaitWritable();
+                }
+            }
+
+            @Override
+            public synchronized void close() throws IOException {
+                if (writable != null)
+                    writable.close();
+                channel.close();
+            }
+        };
+    }
+
+    /**
+     * Blocks until the socket accepts more data. Fails if the peer has not
+     * drained anything within {@link #WRITE_TIMEOUT_MS}.
+     */
+    private void awaitWritable() throws IOException {
+        if (writable == null) {
+            writable = Selector.open();
+            channel.register(writable, SelectionKey.OP_WRITE);
+        }
+
+        int ready = writable.select(WRITE_TIMEOUT_MS);
+        writable.selectedKeys().clear();
+        if (ready == 0)
+            throw new SocketTimeoutException(getName() + ": write timed out");
     }
 
     public NetTerminal(String host, int port) throws IOException {
         this(host + ":" + port, host, port);
     }
 
+    /**
+     * Returns a stream that only supports closing. Input arrives through the
+     * non-blocking {@link #getChannel() channel} and must not be read here.
+     */
+    @Override
     public InputStream getRx() {
         return rx;
     }
@@ -55,4 +129,9 @@ public class NetTerminal extends Terminal {
         return tx;
     }
 
+    @Override
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
 }
@@ -22,6 +22,7 @@ package org.vcml.explorer.ui.terminal;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.SocketChannel;
 
 public abstract class Terminal {
 
@@ -54,6 +55,14 @@ public abstract class Terminal {
 
     public abstract OutputStream getTx();
 
+    /**
+     * Returns a non-blocking channel serviced by {@link TerminalReactor}, or
+     * <tt>null</tt> if {@link #getRx()} needs a thread of its own.
+     */
+    public SocketChannel getChannel() {
+        return null;
+    }
+
     public void close() {
         try {
             getRx().close();
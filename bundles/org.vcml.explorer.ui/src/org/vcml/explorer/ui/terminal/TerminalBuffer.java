@@ -20,111 +20,503 @@
 package org.vcml.explorer.ui.terminal;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/**
+ * Terminal history organized as a ring of lines. Only the last
+ * <tt>scrollback</tt> lines are retained; older lines are dropped from the
+ * top. Lines are numbered absolutely, so that {@link TerminalContent} can
+ * track what changed since it last synchronized using the first retained
+ * line and the lowest line modified in between. Each line carries its SGR
+ * attributes as runs of (column, attribute) pairs, see {@link TerminalStyle}.
+ */
+public class TerminalBuffer implements AnsiParser.Handler {
 
-import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.core.runtime.IStatus;
-import org.eclipse.core.runtime.Status;
-import org.eclipse.swt.widgets.Display;
-import org.eclipse.ui.progress.UIJob;
+    public static final String MSG_IO_ERROR = "I/O Error";
 
-public class TerminalBuffer {
+    public static final int DEFAULT_SCROLLBACK = 10000;
 
-    public static final String MSG_IO_ERROR = "I/O Error";
+    public static final int CLEAN = Integer.MAX_VALUE;
+
+    public static final int BLOCK_SIZE = 8192;
 
     private Terminal terminal;
 
-    private StringBuilder buffer = new StringBuilder();
+    private StringBuilder[] lines;
+
+    private int[][] styles;
+
+    private int[] styleCounts;
+
+    private int head = 0;
+
+    private int count = 1;
+
+    private int first = 0;
+
+    private int cursorLine = 0;
+
+    private int cursorColumn = 0;
+
+    private int dirty = 0;
+
+    private int attribute = TerminalStyle.DEFAULT;
+
+    private boolean changed = false;
+
+    private AnsiParser parser = new AnsiParser(this);
+
+    private ByteBuffer input = ByteBuffer.allocate(BLOCK_SIZE);
+
+    private CharBuffer decoded = CharBuffer.allocate(BLOCK_SIZE);
+
+    private CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private TerminalViewer viewer;
+
+    private volatile TerminalLog log;
+
+    private volatile TriggerEngine triggers;
+
+    private volatile TerminalMacro recorder;
+
+    private volatile TerminalTimeline.Stream timeline;
+
+    private long received = 0;
 
-    private int cursor = 0;
+    private int slot(int index) {
+        return (head + index - first) % lines.length;
+    }
+
+    private StringBuilder line(int index) {
+        return lines[slot(index)];
+    }
+
+    private int lastLine() {
+        return first + count - 1;
+    }
+
+    private void markDirty(int index) {
+        if (index < dirty)
+            dirty = index;
+        changed = true;
+    }
+
+    private void newLine() {
+        int next;
+        if (count == lines.length) {
+            next = head;
+            head = (head + 1) % lines.length;
+            first++;
+            count--;
+        } else {
+            next = (head + count) % lines.length;
+            if (lines[next] == null)
+                lines[next] = new StringBuilder();
+        }
 
-    private boolean readingEscapeCode = false;
+        lines[next].setLength(0);
+        styleCounts[next] = 0;
+        count++;
+        markDirty(lastLine());
+    }
 
-    private String escapeCode = "";
+    private void truncateStyles(int slot, int column) {
+        int runs = styleCounts[slot];
+        while (runs > 0 && styles[slot][2 * runs - 2] >= column)
+            runs--;
+        styleCounts[slot] = runs;
+    }
 
-    private UIJob update;
+    private void truncate(int index, int column) {
+        StringBuilder line = line(index);
+        if (column < line.length()) {
+            line.setLength(column);
+            truncateStyles(slot(index), column);
+        }
+
+        count = index - first + 1;
+        markDirty(index);
+    }
+
+    private void applyStyle(int slot, int column) {
+        int runs = styleCounts[slot];
+        int current = runs > 0 ? styles[slot][2 * runs - 1] : TerminalStyle.DEFAULT;
+        if (current == attribute)
+            return;
+
+        if (runs > 0 && styles[slot][2 * runs - 2] == column) {
+            styles[slot][2 * runs - 1] = attribute;
+            return;
+        }
+
+        if (styles[slot] == null)
+            styles[slot] = new int[8];
+        else if (styles[slot].length < 2 * runs + 2)
+            styles[slot] = Arrays.copyOf(styles[slot], styles[slot].length * 2);
+
+        styles[slot][2 * runs] = column;
+        styles[slot][2 * runs + 1] = attribute;
+        styleCounts[slot] = runs + 1;
+    }
+
+    private void cursorToEnd() {
+        cursorLine = lastLine();
+        cursorColumn = line(cursorLine).length();
+    }
+
+    private void put(char character) {
+        truncate(cursorLine, cursorColumn);
+        StringBuilder line = line(cursorLine);
+        int slot = slot(cursorLine);
+        while (line.length() < cursorColumn) {
+            applyStyle(slot, line.length());
+            line.append(' ');
+        }
+
+        applyStyle(slot, cursorColumn);
+        line.append(character);
+        cursorColumn++;
+    }
+
+    private void eraseLine(int mode) {
+        StringBuilder line = line(cursorLine);
+        switch (mode) {
+        case 0:
+            if (cursorColumn < line.length()) {
+                line.setLength(cursorColumn);
+                truncateStyles(slot(cursorLine), cursorColumn);
+            }
+            break;
+
+        case 1:
+            for (int i = 0; i < Math.min(cursorColumn + 1, line.length()); i++)
+                line.setCharAt(i, ' ');
+            break;
+
+        default:
+            line.setLength(0);
+            styleCounts[slot(cursorLine)] = 0;
+            break;
+        }
+
+        markDirty(cursorLine);
+    }
 
     public Terminal getTerminal() {
         return terminal;
     }
 
-    public String getBuffer() {
-        return buffer.toString();
+    public TerminalViewer getViewer() {
+        return viewer;
+    }
+
+    public TerminalLog getLog() {
+        return log;
     }
 
-    public int getCursor() {
-        return cursor;
+    /**
+     * Starts writing all received output to <tt>newLog</tt>, closing the
+     * previous log if any. Pass <tt>null</tt> to stop logging.
+     */
+    public void setLog(TerminalLog newLog) {
+        TerminalLog old = log;
+        log = newLog;
+        if (old != null && old != newLog)
+            old.close();
     }
 
-    public void clear() {
-        buffer.setLength(0);
-        cursor = 0;
+    public TriggerEngine getTriggers() {
+        return triggers;
     }
 
-    private boolean readEscapeCode(int character) {
-        escapeCode += (char) character;
+    public void setTriggers(TriggerEngine engine) {
+        TriggerEngine old = triggers;
+        triggers = engine;
+        if (old != null && old != engine)
+            old.dispose();
+    }
+
+    public TerminalTimeline.Stream getTimeline() {
+        return timeline;
+    }
+
+    /**
+     * Tags every line received from now on and adds it to <tt>stream</tt>,
+     * or stops doing so if <tt>null</tt>.
+     */
+    public void setTimeline(TerminalTimeline.Stream stream) {
+        timeline = stream;
+    }
 
-        if (escapeCode.equals("c")) { // reset
-            buffer.delete(0, buffer.length());
-            cursor = 0;
-            return true;
+    public int getScrollback() {
+        return lines.length;
+    }
+
+    public synchronized void setScrollback(int scrollback) {
+        if (scrollback < 1)
+            throw new IllegalArgumentException("scrollback must hold at least one line");
+
+        int keep = Math.min(count, scrollback);
+        StringBuilder[] resizedLines = new StringBuilder[scrollback];
+        int[][] resizedStyles = new int[scrollback][];
+        int[] resizedCounts = new int[scrollback];
+        for (int i = 0; i < keep; i++) {
+            int slot = slot(lastLine() - keep + 1 + i);
+            resizedLines[i] = lines[slot];
+            resizedStyles[i] = styles[slot];
+            resizedCounts[i] = styleCounts[slot];
         }
 
-        if (escapeCode.equals("[J")) { // clear screen
-            buffer.delete(cursor, buffer.length());
-            return true;
+        first = lastLine() - keep + 1;
+        lines = resizedLines;
+        styles = resizedStyles;
+        styleCounts = resizedCounts;
+        head = 0;
+        count = keep;
+        if (cursorLine < first) {
+            cursorLine = first;
+            cursorColumn = 0;
         }
 
-        if (escapeCode.equals("[H")) { // move to upper left corner
-            cursor = 0;
-            return true;
+        markDirty(first);
+    }
+
+    public int getFirstLine() {
+        return first;
+    }
+
+    public int getLineCount() {
+        return count;
+    }
+
+    public CharSequence getLine(int index) {
+        return line(index);
+    }
+
+    /**
+     * Returns a copy of the style runs of line <tt>index</tt>, or
+     * <tt>null</tt> if the whole line uses the default style.
+     */
+    public int[] getStyles(int index) {
+        int slot = slot(index);
+        return styleCounts[slot] == 0 ? null : Arrays.copyOf(styles[slot], 2 * styleCounts[slot]);
+    }
+
+    public int getCursorLine() {
+        return cursorLine;
+    }
+
+    public int getCursorColumn() {
+        return cursorColumn;
+    }
+
+    /**
+     * Returns the number of bytes received from the terminal so far.
+     */
+    public synchronized long getReceived() {
+        return received;
+    }
+
+    /**
+     * Waits until more than <tt>mark</tt> bytes have been received or
+     * <tt>timeout</tt> milliseconds have passed. Returns whether the amount
+     * was reached.
+     */
+    public synchronized boolean awaitReceived(long mark, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (received <= mark) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0)
+                return false;
+            wait(remaining);
         }
 
-        if (escapeCode.equals("[A") || escapeCode.equals("[B")) { // up and down arrows
-            cursor = buffer.length();
-            return true;
+        return true;
+    }
+
+    /**
+     * Waits until more than <tt>mark</tt> bytes have been received and the
+     * line holding the cursor matches <tt>prompt</tt>, or until
+     * <tt>timeout</tt> milliseconds have passed. Returns whether the prompt
+     * was seen.
+     */
+    public synchronized boolean awaitPrompt(Pattern prompt, long mark, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (received <= mark || !prompt.matcher(line(cursorLine)).find()) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0)
+                return false;
+            wait(remaining);
         }
 
-        if (escapeCode.startsWith("[") && escapeCode.endsWith("C")) { // right arrow
-            String count = escapeCode.substring(1, escapeCode.length() - 2);
-            cursor += count.isEmpty() ? 1 : Integer.valueOf(count);
-            return true;
+        return true;
+    }
+
+    /**
+     * Returns the lowest line modified since the previous call, or
+     * {@link #CLEAN} if nothing changed, and resets the marker.
+     */
+    public int takeDirtyLine() {
+        int result = dirty;
+        dirty = CLEAN;
+        return result;
+    }
+
+    public synchronized String getBuffer() {
+        StringBuilder text = new StringBuilder();
+        for (int i = first; i <= lastLine(); i++) {
+            if (i > first)
+                text.append('\n');
+            text.append(line(i));
         }
 
-        if (escapeCode.startsWith("[") && escapeCode.endsWith("D")) { // left arrow
-            String count = escapeCode.substring(1, escapeCode.length() - 2);
-            cursor -= count.isEmpty() ? 1 : Integer.valueOf(count);
-            return true;
+        return text.toString();
+    }
+
+    public synchronized void clear() {
+        first += count;
+        head = (head + count) % lines.length;
+        count = 0;
+        newLine();
+        cursorLine = first;
+        cursorColumn = 0;
+    }
+
+    /**
+     * Starts a fresh line so that previous output scrolls out of view but
+     * stays in the scrollback.
+     */
+    private void pushPage() {
+        if (line(lastLine()).length() > 0)
+            newLine();
+        cursorLine = lastLine();
+    }
+
+    @Override
+    public void print(char character) {
+        put(character);
+    }
+
+    @Override
+    public void execute(char control) {
+        switch (control) {
+        case '\b':
+            if (cursorColumn > 0) {
+                cursorColumn--;
+            } else if (cursorLine > first) {
+                cursorLine--;
+                cursorColumn = line(cursorLine).length();
+            }
+            changed = true;
+            break;
+
+        case '\r':
+            cursorLine = lastLine();
+            cursorColumn = 0;
+            changed = true;
+            break;
+
+        case '\n':
+            newLine();
+            cursorLine = lastLine();
+            cursorColumn = 0;
+            break;
+
+        case '\t':
+            put(control);
+            break;
+
+        default: // bell, ctrl+z and others ignored
+            break;
         }
+    }
+
+    @Override
+    public void escDispatch(char code, char intermediate) {
+        if (code == 'c' && intermediate == 0) { // reset
+            clear();
+            attribute = TerminalStyle.DEFAULT;
+        }
+    }
+
+    @Override
+    public void csiDispatch(char code, char marker, char intermediate, int[] params, int n) {
+        if (marker != 0 || intermediate != 0) // private modes (ignored)
+            return;
+
+        switch (code) {
+        case 'A': // up and down arrows
+        case 'B':
+            cursorToEnd();
+            break;
+
+        case 'C': // cursor forward
+            cursorColumn += AnsiParser.param(params, n, 0, 1);
+            break;
+
+        case 'D': // cursor backward
+            cursorColumn = Math.max(cursorColumn - AnsiParser.param(params, n, 0, 1), 0);
+            break;
 
-        if (escapeCode.endsWith("m"))  // color (ignored)
-            return true;
+        case 'G': // cursor to column
+            cursorColumn = AnsiParser.param(params, n, 0, 1) - 1;
+            break;
 
-        if (escapeCode.endsWith("h")) // options (ignored)
-            return true;
+        case 'H': // cursor position, the row is ignored since lines are history
+        case 'f':
+            cursorLine = lastLine();
+            cursorColumn = AnsiParser.param(params, n, 1, 1) - 1;
+            break;
 
-        if (escapeCode.equals("(B")) // keyboard layout (ignored)
-            return true;
+        case 'J': // clear screen, only mode 3 also drops the scrollback
+            int mode = AnsiParser.param(params, n, 0, 0);
+            if (mode == 3)
+                clear();
+            else if (mode == 2)
+                pushPage();
+            else if (mode == 0)
+                truncate(cursorLine, cursorColumn);
+            break;
 
+        case 'K': // clear line
+            eraseLine(AnsiParser.param(params, n, 0, 0));
+            break;
 
-        if (escapeCode.length() > 20) { // stop if we have read too much
-            System.err.println(terminal.getName() + ": giving up reading escape code '" + escapeCode + "'");
-            return true;
+        case 'm': // colors and attributes
+            attribute = TerminalStyle.select(attribute, params, n);
+            break;
+
+        default: // everything else (ignored)
+            return;
         }
 
-        // continue reading
-        return false;
+        changed = true;
     }
 
-    public TerminalBuffer(TerminalViewer viewer, Terminal terminal) {
+    public TerminalBuffer(TerminalViewer viewer, Terminal terminal, int scrollback) {
         this.terminal = terminal;
-        this.update = new UIJob(Display.getDefault(), "uiUpdate_" + terminal.getName()) {
-            @Override
-            public IStatus runInUIThread(IProgressMonitor monitor) {
-                if (!viewer.isDisposed())
-                    viewer.refreshBuffer(TerminalBuffer.this);
-                return Status.OK_STATUS;
-            }
-        };
+        this.lines = new StringBuilder[scrollback];
+        this.lines[0] = new StringBuilder();
+        this.styles = new int[scrollback][];
+        this.styleCounts = new int[scrollback];
+        this.viewer = viewer;
+
+        SocketChannel channel = terminal.getChannel();
+        if (channel != null) {
+            TerminalReactor.getDefault().register(channel, this);
+            return;
+        }
 
         new Thread("ioThread_" + terminal.getName()) {
             @Override
@@ -134,13 +526,47 @@ public class TerminalBuffer {
         }.start();
     }
 
+    public TerminalBuffer(TerminalViewer viewer, Terminal terminal) {
+        this(viewer, terminal, DEFAULT_SCROLLBACK);
+    }
+
+    public TerminalMacro getRecorder() {
+        return recorder;
+    }
+
+    /**
+     * Records everything transmitted from now on into <tt>macro</tt>, or
+     * stops recording if <tt>null</tt>.
+     */
+    public void setRecorder(TerminalMacro macro) {
+        recorder = macro;
+    }
+
     public void transmit(byte str[]) throws IOException {
-        terminal.getTx().write(str);
+        transmit(str, 0, str.length);
+    }
+
+    /**
+     * Writes <tt>length</tt> bytes of <tt>str</tt> and flushes once, so that
+     * bulk input does not cost a flush per character.
+     */
+    public void transmit(byte str[], int offset, int length) throws IOException {
+        terminal.getTx().write(str, offset, length);
         terminal.getTx().flush();
 
+        TerminalMacro macro = recorder;
+        if (macro != null)
+            macro.record(str, offset, length);
+
         if (getTerminal().isEcho()) {
-            for (byte s : str)
-                receive(s);
+            boolean changed = false;
+            synchronized (this) {
+                for (int i = offset; i < offset + length; i++)
+                    changed |= apply(str[i] & 0xff);
+            }
+
+            if (changed)
+                TerminalRefresher.getDefault().markDirty(this);
         }
     }
 
@@ -148,75 +574,138 @@ public class TerminalBuffer {
         terminal.getTx().write(character);
         terminal.getTx().flush();
 
-        if (getTerminal().isEcho())
-            receive(character);
-    }
+        TerminalMacro macro = recorder;
+        if (macro != null)
+            macro.record(new byte[] { (byte) character }, 0, 1);
 
-    public void receive(int character) {
-        if (readingEscapeCode) {
-            if (readEscapeCode(character)) {
-                readingEscapeCode = false;
-                update.schedule();
+        if (getTerminal().isEcho()) {
+            synchronized (this) {
+                receive(character);
             }
+        }
+    }
 
-            return;
+    /**
+     * Applies one character to the buffer and returns whether the visible
+     * content may have changed. Callers must hold the buffer lock.
+     */
+    private boolean apply(int character) {
+        changed = false;
+        if (character == -1) {
+            for (int i = 0; i < MSG_IO_ERROR.length(); i++)
+                put(MSG_IO_ERROR.charAt(i));
+        } else {
+            parser.feed((char) character);
         }
 
-        switch (character) {
-        case -1:
-            buffer.append(MSG_IO_ERROR);
-            cursor += MSG_IO_ERROR.length();
-            break;
+        return changed;
+    }
 
-        case '\b':
-            if (buffer.length() > 0)
-                cursor--;
-            break;
+    public void receive(int character) {
+        if (apply(character))
+            TerminalRefresher.getDefault().markDirty(this);
+    }
 
-        case '\r':
-            cursor = buffer.lastIndexOf("\n") + 1;
-            break;
+    /**
+     * Applies a block of decoded characters and schedules at most one update
+     * for all of them. Callers must hold the buffer lock.
+     */
+    public void receive(char[] chars, int offset, int length) {
+        boolean changed = false;
+        for (int i = offset; i < offset + length; i++)
+            changed |= apply(chars[i]);
+
+        if (changed)
+            TerminalRefresher.getDefault().markDirty(this);
+    }
 
-        case '\n':
-            cursor = buffer.length();
-            buffer.insert(cursor, (char)character);
-            cursor++;
-            break;
+    /**
+     * Decodes the bytes collected in <tt>input</tt> and applies them. An
+     * incomplete UTF-8 sequence at the end is kept for the next block.
+     */
+    private void decodeInput(int n) {
+        input.flip();
+        decoder.decode(input, decoded, false);
+        input.compact();
+        decoded.flip();
+
+        synchronized (this) {
+            receive(decoded.array(), 0, decoded.limit());
+            received += n;
+            notifyAll();
+        }
 
-        case 0x1a: // ctrl+z ignored
-            break;
+        decoded.clear();
+    }
 
-        case 0x1b: // escape
-            readingEscapeCode = true;
-            escapeCode = "";
-            return; // wait with update until we read the entire code
+    private void tapInput(int start, int n) {
+        TerminalLog currentLog = log;
+        if (currentLog != null)
+            currentLog.append(input.array(), start, n);
 
-        case 0x07: // bell
-            return;
+        TriggerEngine currentTriggers = triggers;
+        if (currentTriggers != null)
+            currentTriggers.feed(input.array(), start, n);
 
-        default:
-            if (cursor < buffer.length())
-                buffer.delete(cursor, buffer.length());
-            buffer.insert(cursor, (char)character);
-            cursor++;
+        TerminalTimeline.Stream currentTimeline = timeline;
+        if (currentTimeline != null)
+            currentTimeline.feed(input.array(), start, n);
+    }
+
+    private void endOfInput() {
+        synchronized (this) {
+            receive(-1);
+            notifyAll();
         }
+    }
 
-        update.schedule();
+    /**
+     * Reads whatever <tt>channel</tt> has available without blocking and
+     * applies it. Returns the number of bytes read or -1 at end of stream.
+     */
+    public int read(ReadableByteChannel channel) throws IOException {
+        int start = input.position();
+        int n = channel.read(input);
+        if (n > 0) {
+            tapInput(start, n);
+            decodeInput(n);
+        }
+        else if (n < 0)
+            endOfInput();
+        return n;
     }
 
     public void ioThread() {
         try {
             while (true) {
-                int input = terminal.getRx().read();
-                synchronized (this) {
-                    receive(input);
-                }
-                if (input == -1)
+                int start = input.position();
+                int n = terminal.getRx().read(input.array(), start, input.remaining());
+                if (n == -1) {
+                    endOfInput();
                     return;
+                }
+
+                input.position(start + n);
+                tapInput(start, n);
+                decodeInput(n);
             }
         } catch (IOException e) {
             System.out.println(terminal.getName() + ": I/O thread terminating (" + e.getMessage() + ")");
         }
     }
 
+    /**
+     * Stops servicing the terminal. Threaded terminals stop once their
+     * streams are closed.
+     */
+    public void dispose() {
+        setLog(null);
+        setTriggers(null);
+        setTimeline(null);
+
+        SocketChannel channel = terminal.getChannel();
+        if (channel != null)
+            TerminalReactor.getDefault().unregister(channel);
+    }
+
 }
@@ -0,0 +1,317 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.explorer.ui.terminal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.swt.custom.StyledTextContent;
+import org.eclipse.swt.custom.TextChangeListener;
+import org.eclipse.swt.custom.TextChangedEvent;
+import org.eclipse.swt.custom.TextChangingEvent;
+
+/**
+ * {@link StyledTextContent} mirroring a {@link TerminalBuffer}. The mirror is
+ * only accessed from the UI thread; {@link #update()} copies the lines that
+ * changed since the previous update while holding the buffer lock and reports
+ * them to the widget as a removal at the top and a replacement at the end,
+ * so appending output never re-lays out the whole text.
+ */
+public class TerminalContent implements StyledTextContent {
+
+    public static final String DELIMITER = "\n";
+
+    private List<TextChangeListener> listeners = new ArrayList<TextChangeListener>();
+
+    private TerminalBuffer buffer;
+
+    private boolean reload = true;
+
+    private String[] lines = new String[] { "" };
+
+    private long[] starts = new long[1];
+
+    private int[][] styles = new int[1][];
+
+    private int head = 0;
+
+    private int count = 1;
+
+    private int first = 0;
+
+    private int ring(int index) {
+        return (head + index) % lines.length;
+    }
+
+    private long start(int index) {
+        return starts[ring(index)];
+    }
+
+    private int end(int index) {
+        return (int) (start(index) + lines[ring(index)].length() - starts[head]);
+    }
+
+    private void reset(int capacity, int firstLine) {
+        lines = new String[capacity];
+        starts = new long[capacity];
+        styles = new int[capacity][];
+        head = 0;
+        count = 0;
+        first = firstLine;
+    }
+
+    private void append(String line, int[] runs) {
+        int pos = ring(count);
+        starts[pos] = count == 0 ? 0 : start(count - 1) + lines[ring(count - 1)].length() + DELIMITER.length();
+        lines[pos] = line;
+        styles[pos] = runs;
+        count++;
+    }
+
+    private void appendLines(String text) {
+        int pos = 0;
+        int next;
+        while ((next = text.indexOf(DELIMITER, pos)) != -1) {
+            append(text.substring(pos, next), null);
+            pos = next + DELIMITER.length();
+        }
+
+        append(text.substring(pos), null);
+    }
+
+    private static int countLines(String text) {
+        int result = 0;
+        for (int pos = text.indexOf(DELIMITER); pos != -1; pos = text.indexOf(DELIMITER, pos + 1))
+            result++;
+        return result;
+    }
+
+    private void fireChanging(int start, int replaceCharCount, int replaceLineCount, String text) {
+        TextChangingEvent event = new TextChangingEvent(this);
+        event.start = start;
+        event.replaceCharCount = replaceCharCount;
+        event.replaceLineCount = replaceLineCount;
+        event.newText = text;
+        event.newCharCount = text.length();
+        event.newLineCount = countLines(text);
+        for (TextChangeListener listener : listeners)
+            listener.textChanging(event);
+    }
+
+    private void fireChanged() {
+        TextChangedEvent event = new TextChangedEvent(this);
+        for (TextChangeListener listener : listeners)
+            listener.textChanged(event);
+    }
+
+    private void fireSet() {
+        TextChangedEvent event = new TextChangedEvent(this);
+        for (TextChangeListener listener : listeners)
+            listener.textSet(event);
+    }
+
+    private String joinLines(int from, int to) {
+        StringBuilder text = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            if (i > from)
+                text.append(DELIMITER);
+            text.append(buffer.getLine(i));
+        }
+
+        return text.toString();
+    }
+
+    private void reloadBuffer() {
+        if (buffer == null) {
+            reset(1, 0);
+            append("", null);
+        } else {
+            buffer.takeDirtyLine();
+            reset(buffer.getScrollback(), buffer.getFirstLine());
+            for (int i = 0; i < buffer.getLineCount(); i++)
+                append(buffer.getLine(first + i).toString(), buffer.getStyles(first + i));
+        }
+
+        reload = false;
+        fireSet();
+    }
+
+    private int cursorOffset() {
+        int line = Math.max(buffer.getCursorLine() - first, 0);
+        return getOffsetAtLine(line) + Math.min(buffer.getCursorColumn(), lines[ring(line)].length());
+    }
+
+    public TerminalBuffer getBuffer() {
+        return buffer;
+    }
+
+    public void setBuffer(TerminalBuffer newBuffer) {
+        buffer = newBuffer;
+        reload = true;
+    }
+
+    /**
+     * Brings the mirror up to date with the buffer and returns the offset of
+     * the buffer cursor.
+     */
+    public int update() {
+        if (buffer == null) {
+            if (reload)
+                reloadBuffer();
+            return 0;
+        }
+
+        synchronized (buffer) {
+            int bufferFirst = buffer.getFirstLine();
+            int bufferEnd = bufferFirst + buffer.getLineCount();
+            if (reload || lines.length != buffer.getScrollback() || bufferFirst >= first + count) {
+                reloadBuffer();
+                return cursorOffset();
+            }
+
+            int dirty = buffer.takeDirtyLine();
+            if (dirty == TerminalBuffer.CLEAN && bufferFirst == first)
+                return cursorOffset();
+
+            int dropped = bufferFirst - first;
+            if (dropped > 0) {
+                fireChanging(0, getOffsetAtLine(dropped), dropped, "");
+                head = ring(dropped);
+                count -= dropped;
+                first = bufferFirst;
+                fireChanged();
+            }
+
+            int from = Math.max(Math.min(dirty, first + count - 1), first);
+            from = Math.min(from, bufferEnd - 1);
+
+            int offset = getOffsetAtLine(from - first);
+            String text = joinLines(from, bufferEnd);
+            fireChanging(offset, getCharCount() - offset, first + count - 1 - from, text);
+            count = from - first;
+            for (int i = from; i < bufferEnd; i++)
+                append(buffer.getLine(i).toString(), buffer.getStyles(i));
+            fireChanged();
+
+            return cursorOffset();
+        }
+    }
+
+    /**
+     * Returns the SGR runs of line <tt>lineIndex</tt> as (column, attribute)
+     * pairs, or <tt>null</tt> if the line has no attributes.
+     */
+    public int[] getStyles(int lineIndex) {
+        return styles[ring(lineIndex)];
+    }
+
+    @Override
+    public void addTextChangeListener(TextChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeTextChangeListener(TextChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public int getCharCount() {
+        return end(count - 1);
+    }
+
+    @Override
+    public String getLine(int lineIndex) {
+        return lines[ring(lineIndex)];
+    }
+
+    @Override
+    public int getLineAtOffset(int offset) {
+        long target = starts[head] + offset;
+        int lo = 0;
+        int hi = count - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (start(mid) <= target)
+                lo = mid;
+            else
+                hi = mid - 1;
+        }
+
+        return lo;
+    }
+
+    @Override
+    public int getLineCount() {
+        return count;
+    }
+
+    @Override
+    public String getLineDelimiter() {
+        return DELIMITER;
+    }
+
+    @Override
+    public int getOffsetAtLine(int lineIndex) {
+        return (int) (start(lineIndex) - starts[head]);
+    }
+
+    @Override
+    public String getTextRange(int start, int length) {
+        StringBuilder text = new StringBuilder(length);
+        int line = getLineAtOffset(start);
+        int column = start - getOffsetAtLine(line);
+        while (text.length() < length && line < count) {
+            String current = lines[ring(line)];
+            int take = Math.min(current.length() - column, length - text.length());
+            text.append(current, column, column + take);
+            if (text.length() < length && line < count - 1)
+                text.append(DELIMITER, 0, Math.min(DELIMITER.length(), length - text.length()));
+            column = 0;
+            line++;
+        }
+
+        return text.toString();
+    }
+
+    @Override
+    public void replaceTextRange(int start, int replaceLength, String text) {
+        String current = getTextRange(0, getCharCount());
+        String replaced = current.substring(start, start + replaceLength);
+        fireChanging(start, replaceLength, countLines(replaced), text);
+
+        String updated = current.substring(0, start) + text + current.substring(start + replaceLength);
+        int capacity = Math.max(lines.length, countLines(updated) + 1);
+        reset(capacity, first);
+        appendLines(updated);
+        reload = true;
+        fireChanged();
+    }
+
+    @Override
+    public void setText(String text) {
+        reset(Math.max(lines.length, countLines(text) + 1), first);
+        appendLines(text);
+        reload = true;
+        fireSet();
+    }
+
+}
@@ -0,0 +1,183 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.explorer.ui.terminal;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * Feeds bulk input or a recorded macro into a terminal in the background.
+ * Bulk input is paced in one of three ways: <tt>FIXED</tt> sends chunks of
+ * <tt>chunkSize</tt> bytes every <tt>delay</tt> milliseconds, <tt>ECHO</tt>
+ * sends the next chunk once the target has echoed the previous one and
+ * <tt>PROMPT</tt> sends each line once the target shows its prompt again.
+ * Flow-aware waits give up after <tt>timeout</tt> milliseconds and carry on.
+ */
+public class TerminalInjector extends Job {
+
+    public enum Pacing {
+        FIXED, ECHO, PROMPT
+    }
+
+    public static final int DEFAULT_CHUNK_SIZE = 64;
+
+    public static final long DEFAULT_DELAY_MILLIS = 10;
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+
+    public static final String DEFAULT_PROMPT = "[$#>:] ?$";
+
+    private TerminalBuffer buffer;
+
+    private byte[] data;
+
+    private TerminalMacro macro;
+
+    private Pacing pacing = Pacing.FIXED;
+
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    private long delay = DEFAULT_DELAY_MILLIS;
+
+    private long timeout = DEFAULT_TIMEOUT_MILLIS;
+
+    private Pattern prompt = Pattern.compile(DEFAULT_PROMPT);
+
+    private int timeouts = 0;
+
+    public TerminalInjector(TerminalBuffer buffer, byte[] data) {
+        super("Sending to " + buffer.getTerminal().getName());
+        this.buffer = buffer;
+        this.data = data;
+    }
+
+    public TerminalInjector(TerminalBuffer buffer, TerminalMacro macro) {
+        super("Replaying macro on " + buffer.getTerminal().getName());
+        this.buffer = buffer;
+        this.macro = macro;
+    }
+
+    public void setPacing(Pacing pacing) {
+        this.pacing = pacing;
+    }
+
+    public Pacing getPacing() {
+        return pacing;
+    }
+
+    public void setChunkSize(int size) {
+        chunkSize = Math.max(1, size);
+    }
+
+    public void setDelay(long millis) {
+        delay = millis;
+    }
+
+    public void setTimeout(long millis) {
+        timeout = millis;
+    }
+
+    public void setPrompt(Pattern prompt) {
+        this.prompt = prompt;
+    }
+
+    private int lineEnd(int from) {
+        for (int i = from; i < data.length; i++)
+            if (data[i] == '\n')
+                return i + 1;
+        return data.length;
+    }
+
+    private void sendChunked(int from, int to, IProgressMonitor monitor) throws IOException, InterruptedException {
+        for (int off = from; off < to && !monitor.isCanceled(); off += chunkSize) {
+            int n = Math.min(chunkSize, to - off);
+            long mark = buffer.getReceived();
+            buffer.transmit(data, off, n);
+            monitor.worked(n);
+
+            if (pacing == Pacing.ECHO && !buffer.getTerminal().isEcho()) {
+                if (!buffer.awaitReceived(mark + n - 1, timeout))
+                    timeouts++;
+            } else if (delay > 0) {
+                Thread.sleep(delay);
+            }
+        }
+    }
+
+    private void sendData(IProgressMonitor monitor) throws IOException, InterruptedException {
+        if (pacing != Pacing.PROMPT) {
+            sendChunked(0, data.length, monitor);
+            return;
+        }
+
+        long mark = -1;
+        for (int off = 0; off < data.length && !monitor.isCanceled();) {
+            if (!buffer.awaitPrompt(prompt, mark, timeout))
+                timeouts++;
+
+            int end = lineEnd(off);
+            mark = buffer.getReceived();
+            sendChunked(off, end, monitor);
+            off = end;
+        }
+    }
+
+    private void sendMacro(IProgressMonitor monitor) throws IOException, InterruptedException {
+        for (int i = 0; i < macro.getEventCount() && !monitor.isCanceled(); i++) {
+            long wait = macro.getDelay(i);
+            if (wait > 0)
+                Thread.sleep(wait);
+            buffer.transmit(macro.getEvent(i));
+            monitor.worked(1);
+        }
+    }
+
+    @Override
+    protected IStatus run(IProgressMonitor monitor) {
+        monitor.beginTask(getName(), macro != null ? macro.getEventCount() : data.length);
+
+        try {
+            if (macro != null)
+                sendMacro(monitor);
+            else
+                sendData(monitor);
+        } catch (IOException e) {
+            return new Status(IStatus.ERROR, "org.vcml.explorer.ui", "cannot send input: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            return Status.CANCEL_STATUS;
+        } finally {
+            monitor.done();
+        }
+
+        if (monitor.isCanceled())
+            return Status.CANCEL_STATUS;
+        if (timeouts > 0)
+            return new Status(IStatus.WARNING, "org.vcml.explorer.ui",
+                    getName() + ": target did not respond " + timeouts + " time(s), sent anyway");
+        return Status.OK_STATUS;
+    }
+
+}
@@ -0,0 +1,414 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.explorer.ui.terminal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes the raw output of a terminal to a series of log files. Producers
+ * only copy their block into a lock-free queue; a single writer thread shared
+ * by all logs appends the blocks and maintains a sparse index holding the
+ * file offset and arrival time of every {@link #INDEX_STRIDE}th line. Files
+ * are rotated at line boundaries once they exceed {@link #SEGMENT_SIZE}.
+ * File names carry the start time of the log and existing files are never
+ * overwritten, so repeated runs into the same directory keep their output.
+ * Lookups and searches read the files through memory mappings, so only the
+ * index lives on the heap.
+ */
+public class TerminalLog {
+
+    public static final long SEGMENT_SIZE = 64l << 20;
+
+    public static final int INDEX_STRIDE = 256;
+
+    public static final int MAX_LINE_LENGTH = 4096;
+
+    private static class Chunk {
+
+        private TerminalLog log;
+
+        private byte[] data;
+
+        private long time;
+
+        private Chunk(TerminalLog log, byte[] data, long time) {
+            this.log = log;
+            this.data = data;
+            this.time = time;
+        }
+
+    }
+
+    private static class Segment {
+
+        private File file;
+
+        private long base;
+
+        private long length = 0;
+
+        private MappedByteBuffer map;
+
+        private Segment(File file, long base) {
+            this.file = file;
+            this.base = base;
+        }
+
+    }
+
+    private static final ConcurrentLinkedQueue<Chunk> queue = new ConcurrentLinkedQueue<Chunk>();
+
+    private static Thread writer;
+
+    private File directory;
+
+    private String name;
+
+    private String prefix;
+
+    private List<Segment> segments = new ArrayList<Segment>();
+
+    private FileChannel channel;
+
+    private long size = 0;
+
+    private long lines = 0;
+
+    private boolean lineStart = true;
+
+    private long[] offsets = new long[64];
+
+    private long[] times = new long[64];
+
+    private int indexCount = 0;
+
+    private volatile boolean closed = false;
+
+    private static synchronized void startWriter() {
+        if (writer != null)
+            return;
+
+        writer = new Thread("terminalLogWriter") {
+            @Override
+            public void run() {
+                while (true) {
+                    Chunk chunk = queue.poll();
+                    if (chunk == null)
+                        LockSupport.park(this);
+                    else
+                        chunk.log.write(chunk);
+                }
+            }
+        };
+
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private void openSegment() throws IOException {
+        File file = new File(directory, String.format("%s.%03d.log", prefix, segments.size()));
+        Segment segment = new Segment(file, size);
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        synchronized (this) {
+            segments.add(segment);
+        }
+    }
+
+    private void writeBytes(byte[] data, int offset, int length, long time) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+
+        synchronized (this) {
+            for (int i = offset; i < offset + length; i++) {
+                if (lineStart) {
+                    if (lines % INDEX_STRIDE == 0) {
+                        if (indexCount == offsets.length) {
+                            offsets = Arrays.copyOf(offsets, indexCount * 2);
+                            times = Arrays.copyOf(times, indexCount * 2);
+                        }
+
+                        offsets[indexCount] = size + i - offset;
+                        times[indexCount++] = time;
+                    }
+
+                    lines++;
+                    lineStart = false;
+                }
+
+                if (data[i] == '\n')
+                    lineStart = true;
+            }
+
+            size += length;
+            segments.get(segments.size() - 1).length += length;
+        }
+    }
+
+    private void write(Chunk chunk) {
+        try {
+            if (chunk.data == null) {
+                channel.close();
+                return;
+            }
+
+            int pos = 0;
+            Segment current = segments.get(segments.size() - 1);
+            if (current.length >= SEGMENT_SIZE) {
+                for (int i = 0; i < chunk.data.length; i++) {
+                    if (chunk.data[i] == '\n') {
+                        writeBytes(chunk.data, 0, i + 1, chunk.time);
+                        channel.close();
+                        openSegment();
+                        pos = i + 1;
+                        break;
+                    }
+                }
+            }
+
+            writeBytes(chunk.data, pos, chunk.data.length - pos, chunk.time);
+        } catch (IOException e) {
+            System.err.println(name + ": cannot write log (" + e.getMessage() + ")");
+        }
+    }
+
+    private synchronized Segment findSegment(long offset) {
+        int lo = 0;
+        int hi = segments.size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (segments.get(mid).base <= offset)
+                lo = mid;
+            else
+                hi = mid - 1;
+        }
+
+        return segments.get(lo);
+    }
+
+    private MappedByteBuffer map(Segment segment) throws IOException {
+        long length;
+        synchronized (this) {
+            length = segment.length;
+        }
+
+        if (segment.map == null || segment.map.capacity() < length) {
+            try (FileChannel file = FileChannel.open(segment.file.toPath(), StandardOpenOption.READ)) {
+                segment.map = file.map(MapMode.READ_ONLY, 0, length);
+            }
+        }
+
+        return segment.map;
+    }
+
+    private long skipLines(long offset, long count) throws IOException {
+        long end = getSize();
+        while (count > 0 && offset < end) {
+            Segment segment = findSegment(offset);
+            MappedByteBuffer map = map(segment);
+            int pos = (int) (offset - segment.base);
+            while (count > 0 && pos < map.capacity()) {
+                if (map.get(pos++) == '\n')
+                    count--;
+            }
+
+            offset = segment.base + pos;
+        }
+
+        return offset;
+    }
+
+    public TerminalLog(File directory, String name) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("cannot create " + directory);
+
+        this.directory = directory;
+        this.name = name.replaceAll("[^A-Za-z0-9._-]", "_");
+
+        String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        prefix = this.name + "-" + stamp;
+        for (int run = 1; new File(directory, prefix + ".000.log").exists(); run++)
+            prefix = this.name + "-" + stamp + "-" + run;
+
+        openSegment();
+        startWriter();
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void append(byte[] data, int offset, int length) {
+        if (closed || length == 0)
+            return;
+
+        queue.offer(new Chunk(this, Arrays.copyOfRange(data, offset, offset + length), System.currentTimeMillis()));
+        LockSupport.unpark(writer);
+    }
+
+    /**
+     * Stops logging once all queued output has been written. The log can
+     * still be read afterwards.
+     */
+    public void close() {
+        if (closed)
+            return;
+
+        closed = true;
+        queue.offer(new Chunk(this, null, 0));
+        LockSupport.unpark(writer);
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized long getLineCount() {
+        return lines;
+    }
+
+    /**
+     * Returns the arrival time in milliseconds of the block that contained
+     * the nearest indexed line at or before <tt>line</tt>. The time is exact
+     * only for lines that are a multiple of {@link #INDEX_STRIDE}.
+     */
+    public synchronized long getLineTime(long line) {
+        return times[(int) (line / INDEX_STRIDE)];
+    }
+
+    public long getLineOffset(long line) throws IOException {
+        long start;
+        synchronized (this) {
+            start = offsets[(int) (line / INDEX_STRIDE)];
+        }
+
+        return skipLines(start, line % INDEX_STRIDE);
+    }
+
+    public long getLineAt(long offset) throws IOException {
+        int lo = 0;
+        int hi;
+        synchronized (this) {
+            hi = indexCount - 1;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (offsets[mid] <= offset)
+                    lo = mid;
+                else
+                    hi = mid - 1;
+            }
+        }
+
+        long line = (long) lo * INDEX_STRIDE;
+        long pos = getLineOffset(line);
+        while (line + 1 < getLineCount()) {
+            long next = skipLines(pos, 1);
+            if (next > offset)
+                break;
+            pos = next;
+            line++;
+        }
+
+        return line;
+    }
+
+    /**
+     * Returns the first line that arrived at or after <tt>millis</tt>, with
+     * the granularity of the index.
+     */
+    public synchronized long findTime(long millis) {
+        for (int i = 0; i < indexCount; i++)
+            if (times[i] >= millis)
+                return (long) i * INDEX_STRIDE;
+        return Math.max(lines - 1, 0);
+    }
+
+    public String readLine(long line) throws IOException {
+        long offset = getLineOffset(line);
+        Segment segment = findSegment(offset);
+        MappedByteBuffer map = map(segment);
+
+        int start = (int) (offset - segment.base);
+        int end = start;
+        while (end < map.capacity() && end - start < MAX_LINE_LENGTH && map.get(end) != '\n')
+            end++;
+
+        byte[] data = new byte[end - start];
+        for (int i = 0; i < data.length; i++)
+            data[i] = map.get(start + i);
+
+        return new String(data, StandardCharsets.UTF_8).replace("\r", "");
+    }
+
+    /**
+     * Returns the offset of the first occurrence of <tt>text</tt> at or
+     * after <tt>from</tt>, or -1. Matches never span a file rotation as files
+     * are only rotated at line boundaries.
+     */
+    public long find(String text, long from) throws IOException {
+        byte[] pattern = text.getBytes(StandardCharsets.UTF_8);
+        if (pattern.length == 0)
+            return -1;
+
+        long offset = from;
+        while (offset < getSize()) {
+            Segment segment = findSegment(offset);
+            MappedByteBuffer map = map(segment);
+            if (segment.base + map.capacity() <= offset)
+                break;
+
+            int limit = map.capacity() - pattern.length;
+            for (int pos = (int) (offset - segment.base); pos <= limit; pos++) {
+                if (map.get(pos) != pattern[0])
+                    continue;
+
+                int i = 1;
+                while (i < pattern.length && map.get(pos + i) == pattern[i])
+                    i++;
+                if (i == pattern.length)
+                    return segment.base + pos;
+            }
+
+            offset = segment.base + map.capacity();
+        }
+
+        return -1;
+    }
+
+}
@@ -0,0 +1,123 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.explorer.ui.terminal;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keystrokes captured from a terminal together with the time that passed
+ * before each of them. Macros are stored as text, one event per line, made
+ * of the delay in milliseconds followed by the transmitted bytes in hex.
+ */
+public class TerminalMacro {
+
+    private static TerminalMacro latest = null;
+
+    private List<Long> delays = new ArrayList<Long>();
+
+    private List<byte[]> events = new ArrayList<byte[]>();
+
+    private long last = -1;
+
+    public static synchronized TerminalMacro getLatest() {
+        return latest;
+    }
+
+    public static synchronized void setLatest(TerminalMacro macro) {
+        latest = macro;
+    }
+
+    public synchronized void record(byte[] data, int offset, int length) {
+        long now = System.nanoTime();
+        delays.add(last < 0 ? 0 : (now - last) / 1000000);
+        events.add(Arrays.copyOfRange(data, offset, offset + length));
+        last = now;
+    }
+
+    public synchronized int getEventCount() {
+        return events.size();
+    }
+
+    public synchronized long getDelay(int index) {
+        return delays.get(index);
+    }
+
+    public synchronized byte[] getEvent(int index) {
+        return events.get(index);
+    }
+
+    public synchronized boolean isEmpty() {
+        return events.isEmpty();
+    }
+
+    public synchronized void save(File file) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+            for (int i = 0; i < events.size(); i++) {
+                StringBuilder line = new StringBuilder();
+                line.append(delays.get(i)).append(' ');
+                for (byte b : events.get(i))
+                    line.append(String.format("%02x", b & 0xff));
+                writer.println(line);
+            }
+
+            if (writer.checkError())
+                throw new IOException("cannot write " + file);
+        }
+    }
+
+    public static TerminalMacro load(File file) throws IOException {
+        TerminalMacro macro = new TerminalMacro();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+
+                String[] fields = line.split("\\s+");
+                if (fields.length != 2 || fields[1].length() % 2 != 0)
+                    throw new IOException("malformed macro event: " + line);
+
+                byte[] data = new byte[fields[1].length() / 2];
+                try {
+                    for (int i = 0; i < data.length; i++)
+                        data[i] = (byte) Integer.parseInt(fields[1].substring(2 * i, 2 * i + 2), 16);
+                    macro.delays.add(Long.parseLong(fields[0]));
+                } catch (NumberFormatException e) {
+                    throw new IOException("malformed macro event: " + line);
+                }
+
+                macro.events.add(data);
+            }
+        }
+
+        return macro;
+    }
+
+}
@@ -0,0 +1,175 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.explorer.ui.terminal;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Services all network terminals from a single thread using a
+ * {@link Selector}. Each channel feeds its own {@link TerminalBuffer}. The
+ * thread is started with the first registration and exits once the last
+ * channel has been unregistered or closed.
+ */
+public class TerminalReactor implements Runnable {
+
+    private static TerminalReactor instance;
+
+    private Selector selector;
+
+    private Map<SocketChannel, TerminalBuffer> registrations = new HashMap<SocketChannel, TerminalBuffer>();
+
+    private List<SocketChannel> cancellations = new ArrayList<SocketChannel>();
+
+    public static synchronized TerminalReactor getDefault() {
+        if (instance == null)
+            instance = new TerminalReactor();
+        return instance;
+    }
+
+    private TerminalReactor() {
+        // use getDefault
+    }
+
+    public synchronized void register(SocketChannel channel, TerminalBuffer buffer) {
+        try {
+            if (selector == null) {
+                selector = Selector.open();
+                Thread thread = new Thread(this, "terminalReactor");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        } catch (IOException e) {
+            System.err.println("cannot open terminal selector: " + e.getMessage());
+            return;
+        }
+
+        registrations.put(channel, buffer);
+        selector.wakeup();
+    }
+
+    public synchronized void unregister(SocketChannel channel) {
+        if (selector == null)
+            return;
+
+        registrations.remove(channel);
+        cancellations.add(channel);
+        selector.wakeup();
+    }
+
+    /**
+     * Applies pending registrations and returns the selector to wait on, or
+     * <tt>null</tt> if no channel is left and the reactor thread should end.
+     */
+    private synchronized Selector update() {
+        for (Map.Entry<SocketChannel, TerminalBuffer> entry : registrations.entrySet()) {
+            try {
+                entry.getKey().register(selector, SelectionKey.OP_READ, entry.getValue());
+            } catch (ClosedChannelException e) {
+                // closed before we got to it
+            }
+        }
+
+        for (SocketChannel channel : cancellations) {
+            SelectionKey key = channel.keyFor(selector);
+            if (key != null)
+                key.cancel();
+        }
+
+        registrations.clear();
+        cancellations.clear();
+
+        for (SelectionKey key : selector.keys())
+            if (key.isValid())
+                return selector;
+
+        try {
+            selector.close();
+        } catch (IOException e) {
+            System.err.println("cannot close terminal selector: " + e.getMessage());
+        }
+
+        selector = null;
+        return null;
+    }
+
+    private void read(SelectionKey key) {
+        TerminalBuffer buffer = (TerminalBuffer) key.attachment();
+        try {
+            if (buffer.read((SocketChannel) key.channel()) < 0)
+                key.cancel();
+        } catch (IOException e) {
+            System.out.println(buffer.getTerminal().getName() + ": I/O terminating (" + e.getMessage() + ")");
+            key.cancel();
+        } catch (RuntimeException e) {
+            // a failing consumer must not silence the other terminals
+            System.err.println(buffer.getTerminal().getName() + ": input handling failed, detaching");
+            e.printStackTrace();
+            key.cancel();
+        }
+    }
+
+    @Override
+    public void run() {
+        Selector own;
+        synchronized (this) {
+            own = selector;
+        }
+
+        Selector current;
+        try {
+            while ((current = update()) != null) {
+                current.select();
+
+                Iterator<SelectionKey> keys = current.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isValid() && key.isReadable())
+                        read(key);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("terminal selector failed: " + e.getMessage());
+        } finally {
+            synchronized (this) {
+                // lets the next registration start a new thread
+                if (selector == own) {
+                    try {
+                        own.close();
+                    } catch (IOException e) {
+                        System.err.println("cannot close terminal selector: " + e.getMessage());
+                    }
+                    selector = null;
+                }
+            }
+        }
+    }
+
+}
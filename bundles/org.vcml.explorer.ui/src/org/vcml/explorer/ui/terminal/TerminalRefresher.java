@@ -0,0 +1,94 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.explorer.ui.terminal;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.ui.progress.UIJob;
+
+/**
+ * Single UI job shared by all terminals. Buffers that received output are
+ * collected until the next frame, so each viewer is refreshed at most once
+ * per {@link #FRAME_MILLIS} regardless of how many terminals are streaming.
+ * Viewers that are not visible are only marked stale and catch up when they
+ * are painted again.
+ */
+public class TerminalRefresher extends UIJob {
+
+    public static final long FRAME_MILLIS = 33;
+
+    private static TerminalRefresher instance;
+
+    private Set<TerminalBuffer> dirty = new LinkedHashSet<TerminalBuffer>();
+
+    private boolean pending = false;
+
+    public static synchronized TerminalRefresher getDefault() {
+        if (instance == null)
+            instance = new TerminalRefresher();
+        return instance;
+    }
+
+    private TerminalRefresher() {
+        super(Display.getDefault(), "Terminal Refresh");
+        setSystem(true);
+    }
+
+    public void markDirty(TerminalBuffer buffer) {
+        synchronized (dirty) {
+            dirty.add(buffer);
+            if (pending)
+                return;
+            pending = true;
+        }
+
+        schedule(FRAME_MILLIS);
+    }
+
+    @Override
+    public IStatus runInUIThread(IProgressMonitor monitor) {
+        TerminalBuffer[] buffers;
+        synchronized (dirty) {
+            buffers = dirty.toArray(new TerminalBuffer[dirty.size()]);
+            dirty.clear();
+            pending = false;
+        }
+
+        for (TerminalBuffer buffer : buffers) {
+            TerminalViewer viewer = buffer.getViewer();
+            if (viewer.isDisposed())
+                continue;
+
+            if (viewer.isVisible())
+                viewer.refreshBuffer(buffer);
+            else
+                viewer.markStale();
+        }
+
+        return Status.OK_STATUS;
+    }
+
+}
@@ -0,0 +1,207 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.explorer.ui.terminal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.LineStyleEvent;
+import org.eclipse.swt.custom.LineStyleListener;
+import org.eclipse.swt.custom.StyleRange;
+import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.RGB;
+
+/**
+ * SGR attributes packed into an int and their rendering as {@link StyleRange}
+ * objects. Colors are indices into the xterm 256 color palette, stored off by
+ * one so that zero means the widget default.
+ *
+ * <pre>
+ * bits 0-8:   foreground (0 = default, 1-256 = palette index + 1)
+ * bits 9-17:  background
+ * bits 18-21: bold, italic, underline, inverse
+ * </pre>
+ */
+public class TerminalStyle implements LineStyleListener {
+
+    public static final int DEFAULT = 0;
+
+    private static final int COLOR_MASK = 0x1ff;
+    private static final int BG_SHIFT = 9;
+    private static final int BOLD = 1 << 18;
+    private static final int ITALIC = 1 << 19;
+    private static final int UNDERLINE = 1 << 20;
+    private static final int INVERSE = 1 << 21;
+
+    private static final int[] ANSI_COLORS = {
+            0x000000, 0xcd0000, 0x00cd00, 0xcdcd00, 0x0000ee, 0xcd00cd, 0x00cdcd, 0xe5e5e5,
+            0x7f7f7f, 0xff0000, 0x00ff00, 0xffff00, 0x5c5cff, 0xff00ff, 0x00ffff, 0xffffff };
+
+    private static final Color[] palette = new Color[256];
+
+    private StyledText text;
+
+    private TerminalContent content;
+
+    private static int foreground(int attribute, int color) {
+        return (attribute & ~COLOR_MASK) | color;
+    }
+
+    private static int background(int attribute, int color) {
+        return (attribute & ~(COLOR_MASK << BG_SHIFT)) | (color << BG_SHIFT);
+    }
+
+    private static int cube(int value) {
+        return value == 0 ? 0 : 55 + value * 40;
+    }
+
+    private static int nearest(int r, int g, int b) {
+        return 16 + 36 * Math.round(r / 51f) + 6 * Math.round(g / 51f) + Math.round(b / 51f);
+    }
+
+    /**
+     * Applies an SGR parameter list to <tt>attribute</tt> and returns the
+     * result. True color requests are mapped to the 6x6x6 color cube.
+     */
+    public static int select(int attribute, int[] params, int count) {
+        if (count == 0)
+            return DEFAULT;
+
+        for (int i = 0; i < count; i++) {
+            int code = params[i];
+            if (code == 0)
+                attribute = DEFAULT;
+            else if (code == 1)
+                attribute |= BOLD;
+            else if (code == 3)
+                attribute |= ITALIC;
+            else if (code == 4)
+                attribute |= UNDERLINE;
+            else if (code == 7)
+                attribute |= INVERSE;
+            else if (code == 22)
+                attribute &= ~BOLD;
+            else if (code == 23)
+                attribute &= ~ITALIC;
+            else if (code == 24)
+                attribute &= ~UNDERLINE;
+            else if (code == 27)
+                attribute &= ~INVERSE;
+            else if (code >= 30 && code <= 37)
+                attribute = foreground(attribute, code - 30 + 1);
+            else if (code == 39)
+                attribute = foreground(attribute, 0);
+            else if (code >= 40 && code <= 47)
+                attribute = background(attribute, code - 40 + 1);
+            else if (code == 49)
+                attribute = background(attribute, 0);
+            else if (code >= 90 && code <= 97)
+                attribute = foreground(attribute, code - 90 + 9);
+            else if (code >= 100 && code <= 107)
+                attribute = background(attribute, code - 100 + 9);
+            else if ((code == 38 || code == 48) && i + 1 < count) {
+                int color = -1;
+                if (params[i + 1] == 5 && i + 2 < count) {
+                    color = Math.min(params[i + 2], 255);
+                    i += 2;
+                } else if (params[i + 1] == 2 && i + 4 < count) {
+                    color = nearest(Math.min(params[i + 2], 255), Math.min(params[i + 3], 255),
+                            Math.min(params[i + 4], 255));
+                    i += 4;
+                }
+
+                if (color >= 0)
+                    attribute = code == 38 ? foreground(attribute, color + 1) : background(attribute, color + 1);
+            }
+        }
+
+        return attribute;
+    }
+
+    public static RGB getRGB(int index) {
+        if (index < 16) {
+            int rgb = ANSI_COLORS[index];
+            return new RGB(rgb >> 16, (rgb >> 8) & 0xff, rgb & 0xff);
+        }
+
+        if (index < 232) {
+            int value = index - 16;
+            return new RGB(cube(value / 36), cube((value / 6) % 6), cube(value % 6));
+        }
+
+        int grey = 8 + (index - 232) * 10;
+        return new RGB(grey, grey, grey);
+    }
+
+    private Color getColor(int color) {
+        if (color == 0)
+            return null;
+
+        if (palette[color - 1] == null)
+            palette[color - 1] = new Color(text.getDisplay(), getRGB(color - 1));
+        return palette[color - 1];
+    }
+
+    public TerminalStyle(StyledText text, TerminalContent content) {
+        this.text = text;
+        this.content = content;
+    }
+
+    @Override
+    public void lineGetStyle(LineStyleEvent event) {
+        int[] runs = content.getStyles(content.getLineAtOffset(event.lineOffset));
+        if (runs == null)
+            return;
+
+        int length = event.lineText.length();
+        List<StyleRange> ranges = new ArrayList<StyleRange>();
+        for (int i = 0; i < runs.length; i += 2) {
+            int attribute = runs[i + 1];
+            int start = Math.min(runs[i], length);
+            int end = i + 2 < runs.length ? Math.min(runs[i + 2], length) : length;
+            if (attribute == DEFAULT || start >= end)
+                continue;
+
+            Color fg = getColor(attribute & COLOR_MASK);
+            Color bg = getColor((attribute >> BG_SHIFT) & COLOR_MASK);
+            if ((attribute & INVERSE) != 0) {
+                Color swap = fg != null ? fg : text.getForeground();
+                fg = bg != null ? bg : text.getBackground();
+                bg = swap;
+            }
+
+            int fontStyle = SWT.NORMAL;
+            if ((attribute & BOLD) != 0)
+                fontStyle |= SWT.BOLD;
+            if ((attribute & ITALIC) != 0)
+                fontStyle |= SWT.ITALIC;
+
+            StyleRange range = new StyleRange(event.lineOffset + start, end - start, fg, bg, fontStyle);
+            range.underline = (attribute & UNDERLINE) != 0;
+            ranges.add(range);
+        }
+
+        event.styles = ranges.toArray(new StyleRange[ranges.size()]);
+    }
+
+}
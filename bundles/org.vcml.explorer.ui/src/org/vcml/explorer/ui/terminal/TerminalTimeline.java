@@ -0,0 +1,426 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.explorer.ui.terminal;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.regex.Pattern;
+
+import org.vcml.session.Session;
+
+/**
+ * Merged output of several terminals of one session. Every stream keeps its
+ * most recent lines in a ring, each tagged with the simulation time last
+ * reported by the session and the wall clock time it was received. New lines
+ * are merged into a common index by a k-way merge over the stream tails,
+ * ordered by simulation time, then wall time, then stream. The index only
+ * refers to the rings, so the merged view costs one <tt>long</tt> per line.
+ * Rings grow on demand up to their capacity. Timelines live until they are
+ * {@link #remove(TerminalTimeline) removed}.
+ */
+public class TerminalTimeline {
+
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+
+    public static final int INITIAL_LINES = 1 << 10;
+
+    public static final int MAX_LINE_LENGTH = 4096;
+
+    private static final Pattern ESCAPES = Pattern.compile("\u001b\\[[0-9;?]*[ -/]*[@-~]|\u001b[@-_]|\r");
+
+    private static final int SEQ_BITS = 48;
+
+    private static final long SEQ_MASK = (1l << SEQ_BITS) - 1;
+
+    private static Map<String, TerminalTimeline> timelines = new HashMap<String, TerminalTimeline>();
+
+    private Session session;
+
+    private List<Stream> streams = new ArrayList<Stream>();
+
+    private long[] entries = new long[1 << 16];
+
+    private int head = 0;
+
+    private int count = 0;
+
+    private long first = 0;
+
+    private int capacity = DEFAULT_CAPACITY;
+
+    private boolean disposed = false;
+
+    /**
+     * Lines of a single terminal, numbered by absolute sequence numbers of
+     * which only the last <tt>capacity</tt> are retained.
+     */
+    public class Stream {
+
+        private String name;
+
+        private int index;
+
+        private int capacity;
+
+        private long[] simTimes;
+
+        private long[] wallTimes;
+
+        private String[] texts;
+
+        private boolean disposed = false;
+
+        private long next = 0;
+
+        private long merged = 0;
+
+        private long lastSimTime = 0;
+
+        private byte[] partial = new byte[256];
+
+        private int partialLength = 0;
+
+        private Stream(String name, int index, int capacity) {
+            this.name = name;
+            this.index = index;
+            this.capacity = capacity;
+            allocate(Math.min(capacity, INITIAL_LINES));
+        }
+
+        private void allocate(int lines) {
+            simTimes = new long[lines];
+            wallTimes = new long[lines];
+            texts = new String[lines];
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns whether the timeline has been removed. Disposed streams
+         * ignore further input.
+         */
+        public synchronized boolean isDisposed() {
+            return disposed;
+        }
+
+        private synchronized void dispose() {
+            disposed = true;
+            next = merged = 0;
+            allocate(1);
+        }
+
+        /**
+         * Doubles the ring while it has not wrapped yet, so that every
+         * sequence number still maps to its own slot.
+         */
+        private void grow() {
+            int lines = (int) Math.min((long) texts.length * 2, capacity);
+            simTimes = Arrays.copyOf(simTimes, lines);
+            wallTimes = Arrays.copyOf(wallTimes, lines);
+            texts = Arrays.copyOf(texts, lines);
+        }
+
+        private void addLine() {
+            String text = new String(partial, 0, partialLength, StandardCharsets.UTF_8);
+            partialLength = 0;
+
+            lastSimTime = Math.max(lastSimTime, session.getTime().toNanoOfDay());
+            if (next == texts.length && texts.length < capacity)
+                grow();
+            int slot = (int) (next % texts.length);
+            simTimes[slot] = lastSimTime;
+            wallTimes[slot] = System.currentTimeMillis();
+            boolean plain = text.indexOf('\u001b') < 0 && text.indexOf('\r') < 0;
+            texts[slot] = plain ? text : ESCAPES.matcher(text).replaceAll("");
+            next++;
+        }
+
+        /**
+         * Splits received bytes into lines. Called from the I/O thread of the
+         * terminal.
+         */
+        public synchronized void feed(byte[] data, int offset, int length) {
+            if (disposed)
+                return;
+
+            for (int i = offset; i < offset + length; i++) {
+                byte b = data[i];
+                if (b == '\n' || partialLength == MAX_LINE_LENGTH) {
+                    addLine();
+                    if (b == '\n')
+                        continue;
+                }
+
+                if (partialLength == partial.length)
+                    partial = Arrays.copyOf(partial, partial.length * 2);
+                partial[partialLength++] = b;
+            }
+        }
+
+        private synchronized long getFirst() {
+            return Math.max(0, next - texts.length);
+        }
+
+        private synchronized long getNext() {
+            return next;
+        }
+
+        private synchronized boolean isRetained(long seq) {
+            return seq >= next - texts.length && seq < next;
+        }
+
+        private synchronized long getSimTime(long seq) {
+            return simTimes[(int) (seq % texts.length)];
+        }
+
+        private synchronized long getWallTime(long seq) {
+            return wallTimes[(int) (seq % texts.length)];
+        }
+
+        private synchronized String getText(long seq) {
+            return isRetained(seq) ? texts[(int) (seq % texts.length)] : null;
+        }
+
+    }
+
+    /**
+     * Position of the merge within one stream, caching the sort keys of the
+     * next unmerged line.
+     */
+    private static class Cursor implements Comparable<Cursor> {
+
+        private Stream stream;
+
+        private long seq;
+
+        private long end;
+
+        private long simTime;
+
+        private long wallTime;
+
+        private Cursor(Stream stream, long seq, long end) {
+            this.stream = stream;
+            this.seq = seq;
+            this.end = end;
+            load();
+        }
+
+        private void load() {
+            simTime = stream.getSimTime(seq);
+            wallTime = stream.getWallTime(seq);
+        }
+
+        @Override
+        public int compareTo(Cursor other) {
+            if (simTime != other.simTime)
+                return Long.compare(simTime, other.simTime);
+            if (wallTime != other.wallTime)
+                return Long.compare(wallTime, other.wallTime);
+            return Integer.compare(stream.index, other.stream.index);
+        }
+
+    }
+
+    public static synchronized TerminalTimeline get(Session session) {
+        TerminalTimeline timeline = timelines.get(session.getURI());
+        if (timeline == null) {
+            timeline = new TerminalTimeline(session);
+            timelines.put(session.getURI(), timeline);
+        }
+
+        return timeline;
+    }
+
+    /**
+     * Releases the lines of all streams of <tt>timeline</tt>, after which
+     * {@link #get(Session)} creates a new one for its session.
+     */
+    public static synchronized void remove(TerminalTimeline timeline) {
+        String uri = timeline.getSession().getURI();
+        if (timelines.get(uri) == timeline)
+            timelines.remove(uri);
+        timeline.dispose();
+    }
+
+    private synchronized void dispose() {
+        disposed = true;
+        for (Stream stream : streams)
+            stream.dispose();
+
+        first += count;
+        count = 0;
+        head = 0;
+        entries = new long[1];
+    }
+
+    public synchronized boolean isDisposed() {
+        return disposed;
+    }
+
+    public TerminalTimeline(Session session) {
+        this.session = session;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * Sets how many lines each stream retains. Affects streams added later.
+     */
+    public void setCapacity(int lines) {
+        capacity = lines;
+    }
+
+    /**
+     * Returns the stream called <tt>name</tt>, creating it if needed.
+     */
+    public synchronized Stream addStream(String name) {
+        for (Stream stream : streams)
+            if (stream.getName().equals(name))
+                return stream;
+
+        if (streams.size() > 0xffff)
+            throw new IllegalStateException("too many timeline streams");
+
+        Stream stream = new Stream(name, streams.size(), capacity);
+        streams.add(stream);
+        return stream;
+    }
+
+    public synchronized int getStreamCount() {
+        return streams.size();
+    }
+
+    private int maxLines() {
+        return (int) Math.min((long) capacity * Math.max(streams.size(), 1), Integer.MAX_VALUE - 8);
+    }
+
+    private void append(long entry) {
+        if (count == entries.length && entries.length < maxLines()) {
+            long[] grown = new long[(int) Math.min((long) entries.length * 2, maxLines())];
+            for (int i = 0; i < count; i++)
+                grown[i] = entries[(head + i) % entries.length];
+            entries = grown;
+            head = 0;
+        }
+
+        if (count == entries.length) {
+            head = (head + 1) % entries.length;
+            first++;
+            count--;
+        }
+
+        entries[(head + count) % entries.length] = entry;
+        count++;
+    }
+
+    private Stream stream(long entry) {
+        return streams.get((int) (entry >>> SEQ_BITS));
+    }
+
+    private long entry(long line) {
+        return entries[(int) ((head + line - first) % entries.length)];
+    }
+
+    /**
+     * Merges all lines received since the previous call into the index and
+     * returns how many were added.
+     */
+    public synchronized int merge() {
+        if (disposed)
+            return 0;
+
+        PriorityQueue<Cursor> queue = new PriorityQueue<Cursor>();
+        for (Stream stream : streams) {
+            long end = stream.getNext();
+            long start = Math.max(stream.merged, stream.getFirst());
+            if (start < end)
+                queue.add(new Cursor(stream, start, end));
+        }
+
+        int added = 0;
+        while (!queue.isEmpty()) {
+            Cursor cursor = queue.poll();
+            append(((long) cursor.stream.index << SEQ_BITS) | cursor.seq);
+            cursor.stream.merged = ++cursor.seq;
+            added++;
+
+            if (cursor.seq < cursor.end) {
+                cursor.load();
+                queue.add(cursor);
+            }
+        }
+
+        while (count > 0 && !stream(entries[head]).isRetained(entries[head] & SEQ_MASK)) {
+            head = (head + 1) % entries.length;
+            first++;
+            count--;
+        }
+
+        return added;
+    }
+
+    /**
+     * Returns the absolute number of the oldest line still in the index.
+     * Lines are numbered from <tt>getFirstLine()</tt> to
+     * <tt>getFirstLine() + getLineCount() - 1</tt>.
+     */
+    public synchronized long getFirstLine() {
+        return first;
+    }
+
+    public synchronized int getLineCount() {
+        return count;
+    }
+
+    public synchronized String getStreamName(long line) {
+        return stream(entry(line)).getName();
+    }
+
+    public synchronized long getSimTime(long line) {
+        long entry = entry(line);
+        return stream(entry).getSimTime(entry & SEQ_MASK);
+    }
+
+    public synchronized long getWallTime(long line) {
+        long entry = entry(line);
+        return stream(entry).getWallTime(entry & SEQ_MASK);
+    }
+
+    /**
+     * Returns the text of <tt>line</tt>, or <tt>null</tt> if its stream has
+     * dropped it already.
+     */
+    public synchronized String getText(long line) {
+        long entry = entry(line);
+        return stream(entry).getText(entry & SEQ_MASK);
+    }
+
+}
@@ -19,8 +19,17 @@
 
 package org.vcml.explorer.ui.terminal;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.HashMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.eclipse.jface.dialogs.InputDialog;
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.jface.window.Window;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.StyledText;
@@ -28,27 +37,41 @@ import org.eclipse.swt.events.KeyEvent;
 import org.eclipse.swt.events.KeyListener;
 import org.eclipse.swt.events.MouseEvent;
 import org.eclipse.swt.events.MouseListener;
+import org.eclipse.swt.events.PaintEvent;
+import org.eclipse.swt.events.PaintListener;
 import org.eclipse.swt.events.TraverseEvent;
 import org.eclipse.swt.events.TraverseListener;
 import org.eclipse.swt.layout.FillLayout;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.FileDialog;
 
 public class TerminalViewer extends Composite implements KeyListener, MouseListener, TraverseListener {
 
     private StyledText text;
 
+    private TerminalContent content;
+
     private TerminalBuffer current;
 
+    private int scrollback = TerminalBuffer.DEFAULT_SCROLLBACK;
+
+    private boolean stale = false;
+
     private HashMap<Terminal, TerminalBuffer> buffers;
 
     void refreshBuffer(TerminalBuffer buffer) {
         if ((buffer == null) || (buffer != current))
             return;
 
-        synchronized (buffer) {
-            text.setText(buffer.getBuffer());
-            text.setSelection(buffer.getCursor());
-        }
+        stale = false;
+        text.setSelection(content.update());
+    }
+
+    /**
+     * Defers the refresh of a hidden viewer until it is painted again.
+     */
+    void markStale() {
+        stale = true;
     }
 
     void handleSpecialKeys(int keyCode) throws IOException {
@@ -107,13 +130,24 @@ public class TerminalViewer extends Composite implements KeyListener, MouseListe
             break;
         }
 
-        text.setSelection(text.getText().length());
+        text.setSelection(text.getCharCount());
     }
 
     public StyledText getText() {
         return text;
     }
 
+    public int getScrollback() {
+        return scrollback;
+    }
+
+    public void setScrollback(int lines) {
+        scrollback = lines;
+        for (TerminalBuffer buffer : buffers.values())
+            buffer.setScrollback(lines);
+        refreshBuffer(current);
+    }
+
     public TerminalViewer(Composite parent) {
         super(parent, SWT.NONE);
         setLayout(new FillLayout());
@@ -124,7 +158,22 @@ public class TerminalViewer extends Composite implements KeyListener, MouseListe
         text.addMouseListener(this);
         text.addTraverseListener(this);
 
-        text.setText("");
+        content = new TerminalContent();
+        text.setContent(content);
+        text.addLineStyleListener(new TerminalStyle(text, content));
+        text.addPaintListener(new PaintListener() {
+            @Override
+            public void paintControl(PaintEvent event) {
+                if (!stale)
+                    return;
+
+                stale = false;
+                getDisplay().asyncExec(() -> {
+                    if (!isDisposed())
+                        refreshBuffer(current);
+                });
+            }
+        });
         text.setData("org.eclipse.e4.ui.css.id", "TerminalViewer");
 
         current = null;
@@ -134,26 +183,33 @@ public class TerminalViewer extends Composite implements KeyListener, MouseListe
     public void setTerminal(Terminal terminal) {
         if (terminal == null) {
             current = null;
-            text.setText("");
-            text.setSelection(0);
+            content.setBuffer(null);
+            text.setSelection(content.update());
             return;
         }
 
         TerminalBuffer buffer = buffers.get(terminal);
         if (buffer == null) {
-            buffer = new TerminalBuffer(this, terminal);
+            buffer = new TerminalBuffer(this, terminal, scrollback);
             buffers.put(terminal, buffer);
         }
 
         current = buffer;
+        content.setBuffer(buffer);
         refreshBuffer(buffer);
     }
 
+    public TerminalBuffer getBuffer(Terminal terminal) {
+        return buffers.get(terminal);
+    }
+
     public void removeBuffer(Terminal terminal) {
-        if (terminal == current.getTerminal())
+        if (current != null && terminal == current.getTerminal() && !isDisposed())
             setTerminal(null);
 
-        buffers.remove(terminal);
+        TerminalBuffer buffer = buffers.remove(terminal);
+        if (buffer != null)
+            buffer.dispose();
     }
 
     public void clearBuffer(Terminal terminal) {
@@ -164,6 +220,167 @@ public class TerminalViewer extends Composite implements KeyListener, MouseListe
         }
     }
 
+    /**
+     * Asks for a file and a pacing mode and sends the file contents to
+     * <tt>terminal</tt> in the background.
+     */
+    private static long[] parsePacing(String text) {
+        String[] fields = text.split(",");
+        if (fields.length != 3)
+            return null;
+
+        long[] values = new long[3];
+        try {
+            for (int i = 0; i < 3; i++)
+                values[i] = Long.parseLong(fields[i].trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        if (values[0] <= 0 || values[0] > Integer.MAX_VALUE || values[1] < 0 || values[2] < 0)
+            return null;
+        return values;
+    }
+
+    public void sendFile(Terminal terminal) {
+        TerminalBuffer buffer = buffers.get(terminal);
+        if (buffer == null)
+            return;
+
+        FileDialog fileDialog = new FileDialog(getShell(), SWT.OPEN);
+        fileDialog.setText("Send File to " + terminal.getName());
+        String path = fileDialog.open();
+        if (path == null)
+            return;
+
+        String[] modes = { "Fixed Rate", "Wait for Echo", "Wait for Prompt", "Cancel" };
+        MessageDialog modeDialog = new MessageDialog(getShell(), terminal.getName(), null,
+                "How should " + new File(path).getName() + " be paced?", MessageDialog.QUESTION, modes, 0);
+        int mode = modeDialog.open();
+        if (mode < 0 || mode >= TerminalInjector.Pacing.values().length)
+            return;
+
+        byte[] data;
+        try {
+            data = Files.readAllBytes(Paths.get(path));
+        } catch (IOException e) {
+            MessageDialog.openError(getShell(), terminal.getName(), "Cannot read " + path + ": " + e.getMessage());
+            return;
+        }
+
+        TerminalInjector injector = new TerminalInjector(buffer, data);
+        injector.setPacing(TerminalInjector.Pacing.values()[mode]);
+        if (injector.getPacing() == TerminalInjector.Pacing.PROMPT) {
+            InputDialog promptDialog = new InputDialog(getShell(), terminal.getName(),
+                    "Prompt to wait for before each line (regular expression):", TerminalInjector.DEFAULT_PROMPT,
+                    text -> {
+                        try {
+                            Pattern.compile(text);
+                            return null;
+                        } catch (PatternSyntaxException e) {
+                            return e.getDescription();
+                        }
+                    });
+            if (promptDialog.open() != Window.OK)
+                return;
+            injector.setPrompt(Pattern.compile(promptDialog.getValue()));
+        }
+
+        String defaults = TerminalInjector.DEFAULT_CHUNK_SIZE + ", " + TerminalInjector.DEFAULT_DELAY_MILLIS + ", "
+                + TerminalInjector.DEFAULT_TIMEOUT_MILLIS;
+        InputDialog pacingDialog = new InputDialog(getShell(), terminal.getName(),
+                "Chunk size (bytes), delay between chunks (ms), timeout for echo and prompt (ms):", defaults,
+                text -> parsePacing(text) != null ? null : "expected three non-negative numbers, chunk size > 0");
+        if (pacingDialog.open() != Window.OK)
+            return;
+
+        long[] pacing = parsePacing(pacingDialog.getValue());
+        injector.setChunkSize((int) pacing[0]);
+        injector.setDelay(pacing[1]);
+        injector.setTimeout(pacing[2]);
+
+        injector.setUser(true);
+        injector.schedule();
+    }
+
+    public boolean isRecording(Terminal terminal) {
+        TerminalBuffer buffer = buffers.get(terminal);
+        return buffer != null && buffer.getRecorder() != null;
+    }
+
+    /**
+     * Starts or stops recording the keystrokes sent to <tt>terminal</tt>. A
+     * finished recording becomes the latest macro.
+     */
+    public void setRecording(Terminal terminal, boolean recording) {
+        TerminalBuffer buffer = buffers.get(terminal);
+        if (buffer == null)
+            return;
+
+        TerminalMacro macro = buffer.getRecorder();
+        if (recording && macro == null) {
+            buffer.setRecorder(new TerminalMacro());
+        } else if (!recording && macro != null) {
+            buffer.setRecorder(null);
+            if (!macro.isEmpty())
+                TerminalMacro.setLatest(macro);
+        }
+    }
+
+    /**
+     * Replays the latest macro on <tt>terminal</tt>, asking for a macro file
+     * if nothing has been recorded yet.
+     */
+    public void replayMacro(Terminal terminal) {
+        TerminalBuffer buffer = buffers.get(terminal);
+        if (buffer == null)
+            return;
+
+        TerminalMacro macro = TerminalMacro.getLatest();
+        if (macro == null && (macro = loadMacro()) == null)
+            return;
+
+        TerminalInjector injector = new TerminalInjector(buffer, macro);
+        injector.setUser(true);
+        injector.schedule();
+    }
+
+    public TerminalMacro loadMacro() {
+        FileDialog dialog = new FileDialog(getShell(), SWT.OPEN);
+        dialog.setText("Load Macro");
+        String path = dialog.open();
+        if (path == null)
+            return null;
+
+        try {
+            TerminalMacro macro = TerminalMacro.load(new File(path));
+            TerminalMacro.setLatest(macro);
+            return macro;
+        } catch (IOException e) {
+            MessageDialog.openError(getShell(), "Load Macro", "Cannot load " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public void saveMacro() {
+        TerminalMacro macro = TerminalMacro.getLatest();
+        if (macro == null)
+            return;
+
+        FileDialog dialog = new FileDialog(getShell(), SWT.SAVE);
+        dialog.setText("Save Macro");
+        dialog.setOverwrite(true);
+        String path = dialog.open();
+        if (path == null)
+            return;
+
+        try {
+            macro.save(new File(path));
+        } catch (IOException e) {
+            MessageDialog.openError(getShell(), "Save Macro", "Cannot save " + path + ": " + e.getMessage());
+        }
+    }
+
     @Override
     public void keyPressed(KeyEvent event) {
         if (current == null)
@@ -202,8 +419,8 @@ public class TerminalViewer extends Composite implements KeyListener, MouseListe
             }
 
         } catch (IOException e) {
-            text.setText(text.getText() + "\n" + e.getMessage() + "\n");
-            text.setSelection(text.getText().length());
+            text.append("\n" + e.getMessage() + "\n");
+            text.setSelection(text.getCharCount());
         }
     }
 
@@ -0,0 +1,147 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.explorer.ui.terminal;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A pattern on terminal output and the action to take when it appears.
+ * Triggers are written one per line as
+ *
+ * <pre>
+ * stop "Kernel panic"
+ * log /login:\s*$/
+ * command "Starting init" system.cpu0 dump
+ * </pre>
+ *
+ * where quoted patterns are matched literally anywhere in the output and
+ * patterns between slashes are regular expressions matched per line. A
+ * pattern ends at the first unescaped quote; write <tt>\"</tt> and
+ * <tt>\\</tt> inside literals and <tt>\/</tt> inside regular expressions.
+ */
+public class Trigger {
+
+    public enum Action {
+        STOP, LOG, COMMAND
+    }
+
+    private Action action;
+
+    private String pattern;
+
+    private Pattern regex;
+
+    private String[] command;
+
+    public Action getAction() {
+        return action;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public boolean isRegex() {
+        return regex != null;
+    }
+
+    public Pattern getRegex() {
+        return regex;
+    }
+
+    /**
+     * Returns the module name followed by command name and arguments for
+     * {@link Action#COMMAND} triggers.
+     */
+    public String[] getCommand() {
+        return command;
+    }
+
+    public Trigger(Action action, String pattern, boolean isRegex, String[] command) {
+        if (pattern.isEmpty())
+            throw new IllegalArgumentException("empty pattern");
+        if (action == Action.COMMAND && (command == null || command.length < 2))
+            throw new IllegalArgumentException("command trigger needs a module and a command");
+        if (action != Action.COMMAND && command != null)
+            throw new IllegalArgumentException(action.name().toLowerCase() + " trigger takes no arguments");
+
+        this.action = action;
+        this.pattern = pattern;
+        this.regex = isRegex ? Pattern.compile(pattern) : null;
+        this.command = command;
+    }
+
+    public static Trigger parse(String line) {
+        line = line.trim();
+        int space = line.indexOf(' ');
+        if (space < 0)
+            throw new IllegalArgumentException("expected action and pattern: " + line);
+
+        Action action;
+        try {
+            action = Action.valueOf(line.substring(0, space).toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("unknown action '" + line.substring(0, space) + "'");
+        }
+
+        String rest = line.substring(space).trim();
+        char quote = rest.isEmpty() ? 0 : rest.charAt(0);
+        if (quote != '"' && quote != '/')
+            throw new IllegalArgumentException("pattern must be quoted with \"...\" or /.../");
+
+        StringBuilder pattern = new StringBuilder();
+        int end = 1;
+        for (; end < rest.length() && rest.charAt(end) != quote; end++) {
+            char c = rest.charAt(end);
+            if (c == '\\' && end + 1 < rest.length()) {
+                char next = rest.charAt(++end);
+                // regular expressions keep their escapes except for the delimiter
+                if (quote == '/' && next != '/')
+                    pattern.append(c);
+                c = next;
+            }
+            pattern.append(c);
+        }
+
+        if (end == rest.length())
+            throw new IllegalArgumentException("unterminated pattern: " + rest);
+
+        String args = rest.substring(end + 1).trim();
+        if (!args.isEmpty() && !Character.isWhitespace(rest.charAt(end + 1)))
+            throw new IllegalArgumentException("expected a space after the pattern: " + rest);
+
+        try {
+            return new Trigger(action, pattern.toString(), quote == '/', args.isEmpty() ? null : args.split("\\s+"));
+        } catch (PatternSyntaxException e) {
+            throw new IllegalArgumentException(e.getDescription() + " in /" + e.getPattern() + "/");
+        }
+    }
+
+    @Override
+    public String toString() {
+        String quoted = isRegex() ? "/" + pattern.replace("/", "\\/") + "/"
+                : "\"" + pattern.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+        String result = action.name().toLowerCase() + " " + quoted;
+        return command == null ? result : result + " " + String.join(" ", command);
+    }
+
+}
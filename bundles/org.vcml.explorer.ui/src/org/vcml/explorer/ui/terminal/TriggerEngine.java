@@ -0,0 +1,384 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.explorer.ui.terminal;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.swt.widgets.Display;
+import org.vcml.explorer.ui.services.ISessionService;
+import org.vcml.session.Module;
+import org.vcml.session.Session;
+import org.vcml.session.SessionException;
+
+/**
+ * Matches terminal output against a set of {@link Trigger}s while it is
+ * received. Literal patterns are compiled into one Aho-Corasick automaton
+ * over UTF-8 bytes, so each byte costs a single table lookup regardless of
+ * the number of patterns, and matches may span input blocks. Regular
+ * expressions are evaluated once per completed line. Actions run on a
+ * separate thread so that the I/O thread is never blocked by a round trip
+ * to the simulation. The last {@link #MAX_HITS} hits are kept together with
+ * the outcome of their action.
+ */
+public class TriggerEngine {
+
+    public static final int MAX_LINE_LENGTH = 4096;
+
+    public static final int MAX_HITS = 1000;
+
+    public static class Hit {
+
+        private Trigger trigger;
+
+        private String line;
+
+        private long wallTime;
+
+        private LocalTime simTime;
+
+        private volatile String result;
+
+        private Hit(Trigger trigger, String line, long wallTime, LocalTime simTime) {
+            this.trigger = trigger;
+            this.line = line;
+            this.wallTime = wallTime;
+            this.simTime = simTime;
+        }
+
+        public Trigger getTrigger() {
+            return trigger;
+        }
+
+        public String getLine() {
+            return line;
+        }
+
+        public long getWallTime() {
+            return wallTime;
+        }
+
+        /**
+         * Returns the simulation time last polled by the session service when
+         * the match was seen, which may lag the actual output by up to one
+         * poll interval while the simulation runs.
+         */
+        public LocalTime getSimTime() {
+            return simTime;
+        }
+
+        /**
+         * Returns the outcome of the action, e.g. the reply of a command, or
+         * <tt>null</tt> if the action has not completed or produces none.
+         */
+        public String getResult() {
+            return result;
+        }
+
+    }
+
+    /** Aho-Corasick automaton with all failure transitions resolved */
+    private static class Automaton {
+
+        private int[] delta;
+
+        private int[][] outputs;
+
+        private Automaton(List<byte[]> patterns) {
+            int maxStates = 1;
+            for (byte[] pattern : patterns)
+                maxStates += pattern.length;
+
+            int[] trie = new int[maxStates * 256];
+            Arrays.fill(trie, -1);
+            int[][] matches = new int[maxStates][];
+            int states = 1;
+
+            for (int i = 0; i < patterns.size(); i++) {
+                int state = 0;
+                for (byte b : patterns.get(i)) {
+                    int idx = state << 8 | (b & 0xff);
+                    if (trie[idx] < 0)
+                        trie[idx] = states++;
+                    state = trie[idx];
+                }
+
+                matches[state] = append(matches[state], i);
+            }
+
+            delta = Arrays.copyOf(trie, states * 256);
+            outputs = Arrays.copyOf(matches, states);
+            int[] fail = new int[states];
+            int[] queue = new int[states];
+            int head = 0;
+            int tail = 0;
+
+            for (int c = 0; c < 256; c++) {
+                if (delta[c] < 0) {
+                    delta[c] = 0;
+                } else {
+                    fail[delta[c]] = 0;
+                    queue[tail++] = delta[c];
+                }
+            }
+
+            while (head < tail) {
+                int state = queue[head++];
+                int[] inherited = outputs[fail[state]];
+                if (inherited != null) {
+                    for (int out : inherited)
+                        outputs[state] = append(outputs[state], out);
+                }
+
+                for (int c = 0; c < 256; c++) {
+                    int idx = state << 8 | c;
+                    int next = delta[idx];
+                    if (next < 0) {
+                        delta[idx] = delta[fail[state] << 8 | c];
+                    } else {
+                        fail[next] = delta[fail[state] << 8 | c];
+                        queue[tail++] = next;
+                    }
+                }
+            }
+        }
+
+        private static int[] append(int[] list, int value) {
+            if (list == null)
+                return new int[] { value };
+            int[] result = Arrays.copyOf(list, list.length + 1);
+            result[list.length] = value;
+            return result;
+        }
+
+    }
+
+    private Session session;
+
+    private ISessionService service;
+
+    private ExecutorService executor;
+
+    private volatile List<Trigger> triggers = new ArrayList<Trigger>();
+
+    private volatile Map<Trigger, Module> modules = new HashMap<Trigger, Module>();
+
+    private List<Trigger> literals = new ArrayList<Trigger>();
+
+    private List<Trigger> regexes = new ArrayList<Trigger>();
+
+    private Automaton automaton = new Automaton(new ArrayList<byte[]>());
+
+    private int state = 0;
+
+    private byte[] line = new byte[256];
+
+    private int lineLength = 0;
+
+    private ArrayDeque<Hit> hits = new ArrayDeque<Hit>();
+
+    private String currentLine() {
+        int length = lineLength;
+        while (length > 0 && line[length - 1] == '\r')
+            length--;
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private void fire(Trigger trigger, String text) {
+        Hit hit = new Hit(trigger, text, System.currentTimeMillis(), session.getTime());
+        synchronized (hits) {
+            if (hits.size() == MAX_HITS)
+                hits.removeFirst();
+            hits.addLast(hit);
+        }
+
+        executor.execute(() -> perform(hit));
+    }
+
+    /**
+     * Looks up a module while the simulation is stopped, returns <tt>null</tt>
+     * if it is running or the module does not exist.
+     */
+    private Module lookup(String name) {
+        if (!session.isConnected() || session.isRunning())
+            return null;
+
+        try {
+            return session.findObject(name);
+        } catch (SessionException e) {
+            System.err.println("trigger lookup of " + name + " failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stops the simulation from the trigger thread. Only the protocol traffic
+     * happens here, listeners are notified on the UI thread.
+     */
+    private void stop() throws SessionException {
+        if (!session.isConnected() || !session.isRunning())
+            return;
+
+        try {
+            session.stopSimulation();
+            Display.getDefault().asyncExec(() -> service.sessionChanged(session));
+        } catch (SessionException e) {
+            Display.getDefault().asyncExec(() -> service.reportSessionError(session, e));
+            throw e;
+        }
+    }
+
+    private void perform(Hit hit) {
+        Trigger trigger = hit.getTrigger();
+        try {
+            switch (trigger.getAction()) {
+            case STOP:
+                stop();
+                hit.result = "stopped at " + session.getTimeFormatted();
+                break;
+
+            case COMMAND:
+                String[] command = trigger.getCommand();
+                stop();
+                Module module = modules.get(trigger);
+                if (module == null)
+                    module = lookup(command[0]);
+                if (module == null) {
+                    hit.result = "no such module " + command[0];
+                    break;
+                }
+
+                try {
+                    hit.result = module.execute(Arrays.copyOfRange(command, 1, command.length));
+                } catch (SessionException e) {
+                    hit.result = e.getMessage();
+                }
+                break;
+
+            default:
+                break;
+            }
+        } catch (SessionException e) {
+            hit.result = e.getMessage();
+        }
+    }
+
+    public TriggerEngine(Session session, ISessionService service) {
+        this.session = session;
+        this.service = service;
+        // matches that race with dispose are dropped instead of failing the
+        // I/O thread that still holds this engine
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "triggers_" + session);
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    public List<Trigger> getTriggers() {
+        return triggers;
+    }
+
+    /**
+     * Replaces all triggers. Modules of command triggers are resolved here if
+     * the simulation is stopped, otherwise once the trigger has stopped it.
+     */
+    public synchronized void setTriggers(List<Trigger> newTriggers) {
+        List<Trigger> newLiterals = new ArrayList<Trigger>();
+        List<Trigger> newRegexes = new ArrayList<Trigger>();
+        List<byte[]> patterns = new ArrayList<byte[]>();
+        Map<Trigger, Module> newModules = new HashMap<Trigger, Module>();
+        for (Trigger trigger : newTriggers) {
+            if (trigger.getAction() == Trigger.Action.COMMAND) {
+                Module module = lookup(trigger.getCommand()[0]);
+                if (module != null)
+                    newModules.put(trigger, module);
+            }
+
+            if (trigger.isRegex()) {
+                newRegexes.add(trigger);
+            } else {
+                newLiterals.add(trigger);
+                patterns.add(trigger.getPattern().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        automaton = new Automaton(patterns);
+        literals = newLiterals;
+        regexes = newRegexes;
+        modules = newModules;
+        triggers = new ArrayList<Trigger>(newTriggers);
+        state = 0;
+    }
+
+    public List<Hit> getHits() {
+        synchronized (hits) {
+            return new ArrayList<Hit>(hits);
+        }
+    }
+
+    /**
+     * Scans a block of raw terminal output. Called by the I/O thread of the
+     * terminal that owns this engine.
+     */
+    public synchronized void feed(byte[] data, int offset, int length) {
+        int[] delta = automaton.delta;
+        int[][] outputs = automaton.outputs;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = data[i];
+            if (b == '\n') {
+                if (!regexes.isEmpty()) {
+                    String text = currentLine();
+                    for (Trigger trigger : regexes)
+                        if (trigger.getRegex().matcher(text).find())
+                            fire(trigger, text);
+                }
+                lineLength = 0;
+            } else if (lineLength < MAX_LINE_LENGTH) {
+                if (lineLength == line.length)
+                    line = Arrays.copyOf(line, line.length * 2);
+                line[lineLength++] = b;
+            }
+
+            state = delta[state << 8 | (b & 0xff)];
+            if (outputs[state] != null) {
+                for (int match : outputs[state])
+                    fire(literals.get(match), currentLine());
+            }
+        }
+    }
+
+    public void dispose() {
+        executor.shutdown();
+    }
+
+}
@@ -0,0 +1,225 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.session;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * Checks the {@link ReplyParser} scanners against command replies kept in
+ * <tt>fixtures/</tt>. The <tt>disas</tt> fixture is additionally compared
+ * line by line against the regular expression the scanner replaced.
+ */
+public class ReplyParserTest {
+
+    private static final String LEGACY_DISAS = "\\s[>|\\s]\\s(\\[.*\\])?\\s?([0-9a-fA-F]+)?\\s?([0-9a-fA-F]*):\\s"
+            + "(\\[[[0-9a-fA-F]{2}\\s]*[[0-9a-fA-F]{2}]{1}\\])\\s(.*)?";
+
+    private static String fixture(String name) throws IOException {
+        try (InputStream in = ReplyParserTest.class.getResourceAsStream("fixtures/" + name)) {
+            if (in == null)
+                throw new IOException("missing fixture " + name);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            in.transferTo(out);
+            return out.toString(StandardCharsets.UTF_8);
+        }
+    }
+
+    private static List<ReplyParser.Disassembly> disassemble(String reply) {
+        List<ReplyParser.Disassembly> result = new ArrayList<ReplyParser.Disassembly>();
+        for (String line : reply.split("\n")) {
+            ReplyParser.Disassembly insn = new ReplyParser.Disassembly();
+            ReplyParser.parseDisassembly(line, insn);
+            result.add(insn);
+        }
+
+        return result;
+    }
+
+    private static void assertInstruction(ReplyParser.Disassembly insn, String symbol, long virt, long phys,
+            String bytes, int size, String text) {
+        assertTrue(insn.isValid());
+        assertFalse(insn.isUnmapped());
+        assertEquals(symbol, insn.getSymbol());
+        assertEquals(virt, insn.getVirtualAddress());
+        assertEquals(phys, insn.getPhysicalAddress());
+        assertEquals(bytes, insn.getInstruction());
+        assertEquals(size, insn.getSize());
+        assertEquals(text, insn.getText());
+    }
+
+    @Test
+    public void testDisassembly() throws IOException {
+        List<ReplyParser.Disassembly> lines = disassemble(fixture("disas.txt"));
+
+        assertFalse(lines.get(0).isValid());
+        assertInstruction(lines.get(1), "[_start+0]", 0x80000000l, 0x80000000l, "[13 05 00 00]", 4, "li a0,0");
+        assertInstruction(lines.get(2), "[_start+4]", 0x80000004l, 0x80000004l, "[97 02 00 00]", 4,
+                "auipc t0,0x0");
+        assertInstruction(lines.get(4), "[_start+12]", 0x8000000cl, 0x8000000cl, "[73 90 52 30]", 4,
+                "csrw mtvec,t0");
+        assertInstruction(lines.get(5), "", 0x80000010l, 0x80000010l, "[6f 00 00 00]", 4, "j 0x80000010");
+        assertInstruction(lines.get(6), "", 0x80000014l, 0x80000014l, "[01 45]", 2, "c.li a0,0");
+        assertInstruction(lines.get(7), "[trap_entry+0]", 0xffffffff80200000l, 0x80200000l, "[13 01 01 ff]", 4,
+                "addi sp,sp,-16");
+        assertInstruction(lines.get(8), "", 0xffffffff80200004l, 0x80200004l, "[23 34 11 00]", 4, "sd ra,8(sp)");
+        assertInstruction(lines.get(11), "", 0x80000016l, 0x80000016l, "[00 00]", 2, "--");
+
+        for (int i = 12; i < lines.size(); i++)
+            assertFalse("line " + i, lines.get(i).isValid());
+    }
+
+    @Test
+    public void testUnmappedDisassembly() throws IOException {
+        List<ReplyParser.Disassembly> lines = disassemble(fixture("disas.txt"));
+
+        assertTrue(lines.get(9).isValid());
+        assertTrue(lines.get(9).isUnmapped());
+        assertEquals("[kernel_init+0]", lines.get(9).getSymbol());
+
+        assertTrue(lines.get(10).isValid());
+        assertTrue(lines.get(10).isUnmapped());
+        assertNull(lines.get(10).getSymbol());
+    }
+
+    @Test
+    public void testDisassemblyMatchesLegacyRegex() throws IOException {
+        Pattern pattern = Pattern.compile(LEGACY_DISAS);
+        String[] lines = fixture("disas.txt").split("\n");
+        List<ReplyParser.Disassembly> parsed = disassemble(fixture("disas.txt"));
+
+        for (int i = 0; i < lines.length; i++) {
+            ReplyParser.Disassembly insn = parsed.get(i);
+            if (insn.isUnmapped())
+                continue;
+
+            Matcher matcher = pattern.matcher(lines[i]);
+            if (!matcher.find()) {
+                // the regex missed instructions without text, the scanner shows them as "--"
+                if (!lines[i].endsWith("]"))
+                    assertFalse("line " + i, insn.isValid());
+                continue;
+            }
+
+            String virt = matcher.group(2);
+            String phys = matcher.group(3).isEmpty() ? virt : matcher.group(3);
+            assertTrue("line " + i, insn.isValid());
+            assertEquals("line " + i, matcher.group(1) != null ? matcher.group(1) : "", insn.getSymbol());
+            assertEquals("line " + i, Long.parseUnsignedLong(virt, 16), insn.getVirtualAddress());
+            assertEquals("line " + i, Long.parseUnsignedLong(phys, 16), insn.getPhysicalAddress());
+            assertEquals("line " + i, matcher.group(4), insn.getInstruction());
+            assertEquals("line " + i, (matcher.group(4).length() - 1) / 3, insn.getSize());
+            assertEquals("line " + i, matcher.group(5).trim(), insn.getText());
+        }
+    }
+
+    @Test
+    public void testSymbols() throws IOException {
+        List<String> names = new ArrayList<String>();
+        List<Long> values = new ArrayList<Long>();
+        List<Integer> types = new ArrayList<Integer>();
+
+        int count = ReplyParser.parseSymbols(fixture("lsym.txt"), (name, value, size, type) -> {
+            assertEquals(0, size);
+            names.add(name);
+            values.add(value);
+            types.add(type);
+        });
+
+        assertEquals(6, count);
+        assertEquals(List.of("_start", "main", "uart_base", "xprt_load_transport", "early_init", "console_buf"),
+                names);
+        assertEquals(List.of(0x80000000l, 0x80000100l, 0x80010000l, 0xffffffffc03c9de0l, 0xc0100000l,
+                0x80010008l), values);
+        assertEquals(List.of(ElfFile.STT_FUNC, ElfFile.STT_FUNC, ElfFile.STT_OBJECT, ElfFile.STT_FUNC,
+                ElfFile.STT_FUNC, ElfFile.STT_OBJECT), types);
+    }
+
+    @Test
+    public void testRegisters() throws IOException {
+        String reply = fixture("dump.txt");
+        List<String> names = new ArrayList<String>();
+        List<Long> values = new ArrayList<Long>();
+
+        int count = ReplyParser.parseRegisters(reply, (name, value) -> {
+            names.add(name);
+            values.add(value);
+        });
+
+        assertEquals(7, count);
+        assertEquals(List.of("PC", "SP", "X0", "X1", "X2", "MSTATUS", "MCAUSE"), names);
+        assertEquals(List.of(0x80000010l, 0x80010000l, 0l, 0xdeadbeefl, -1l, 0x1800l, 0xbl), values);
+    }
+
+    @Test
+    public void testFindRegister() throws IOException {
+        String reply = fixture("dump.txt");
+
+        assertEquals(0x80000010l, ReplyParser.findRegister(reply, "PC", -1));
+        assertEquals(0x1800l, ReplyParser.findRegister(reply, "MSTATUS", -1));
+        assertEquals(-1l, ReplyParser.findRegister(reply, "X", -1));
+        assertEquals(-1l, ReplyParser.findRegister(reply, "STATUS", -1));
+        assertEquals(-1l, ReplyParser.findRegister(reply, "MEPC", -1));
+        assertEquals(-1l, ReplyParser.findRegister(reply, "MTVAL", -1));
+        assertEquals(-1l, ReplyParser.findRegister(reply, "IRQ", -1));
+    }
+
+    @Test
+    public void testShowBytes() throws IOException {
+        byte[] data = new byte[40];
+        assertEquals(36, ReplyParser.parseBytes(fixture("show.txt"), data));
+
+        byte[] expected = { 0x13, 0x05, 0x00, 0x00, (byte) 0x97, 0x02, 0x00, 0x00, (byte) 0x93, (byte) 0x82, 0x02,
+                0x01, 0x73, (byte) 0x90, 0x52, 0x30, 0x6f, 0x00, 0x00, 0x00, 0x01, 0x45, 0x00, 0x00, (byte) 0xef,
+                (byte) 0xbe, (byte) 0xad, (byte) 0xde, (byte) 0xff, 0x00, 0x7f, (byte) 0x80, 0x41, 0x42, 0x43,
+                0x44, 0x00, 0x00, 0x00, 0x00 };
+        assertArrayEquals(expected, data);
+    }
+
+    @Test
+    public void testShowBytesLimit() throws IOException {
+        byte[] data = new byte[6];
+        assertEquals(6, ReplyParser.parseBytes(fixture("show.txt"), data));
+        assertArrayEquals(new byte[] { 0x13, 0x05, 0x00, 0x00, (byte) 0x97, 0x02 }, data);
+    }
+
+    @Test
+    public void testReadStopsAtUnknownBytes() throws IOException {
+        byte[] data = new byte[12];
+        assertEquals(6, ReplyParser.parseBytes(fixture("read.txt"), data));
+    }
+
+}
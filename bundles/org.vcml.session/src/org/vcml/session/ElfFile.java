@@ -0,0 +1,434 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.session;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only view of an ELF32 or ELF64 file of either byte order. The file is
+ * memory mapped and section contents, symbols and strings are decoded on
+ * demand, so large debug images do not need to be loaded onto the heap.
+ */
+public class ElfFile {
+
+    public static final int SHT_SYMTAB = 2;
+    public static final int SHT_DYNSYM = 11;
+
+    public static final int STT_OBJECT = 1;
+    public static final int STT_FUNC = 2;
+
+    public static final int SHN_UNDEF = 0;
+
+    public static final int PT_LOAD = 1;
+
+    public static final int PF_X = 1;
+    public static final int PF_W = 2;
+    public static final int PF_R = 4;
+
+    public static class Section {
+
+        private String name;
+
+        private int type;
+
+        private long flags;
+
+        private long address;
+
+        private long offset;
+
+        private long size;
+
+        private int link;
+
+        private long entrySize;
+
+        public String getName() {
+            return name;
+        }
+
+        public int getType() {
+            return type;
+        }
+
+        public long getFlags() {
+            return flags;
+        }
+
+        public long getAddress() {
+            return address;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public int getLink() {
+            return link;
+        }
+
+        public long getEntrySize() {
+            return entrySize;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s @ 0x%x (%d bytes)", name, address, size);
+        }
+
+    }
+
+    public static class Segment {
+
+        private int type;
+
+        private int flags;
+
+        private long offset;
+
+        private long virtAddress;
+
+        private long physAddress;
+
+        private long fileSize;
+
+        private long memorySize;
+
+        public int getType() {
+            return type;
+        }
+
+        public int getFlags() {
+            return flags;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getVirtualAddress() {
+            return virtAddress;
+        }
+
+        public long getPhysicalAddress() {
+            return physAddress;
+        }
+
+        public long getFileSize() {
+            return fileSize;
+        }
+
+        public long getMemorySize() {
+            return memorySize;
+        }
+
+        public boolean isLoadable() {
+            return type == PT_LOAD;
+        }
+
+        public boolean isWritable() {
+            return (flags & PF_W) != 0;
+        }
+
+        public boolean isExecutable() {
+            return (flags & PF_X) != 0;
+        }
+
+        public boolean contains(long address, long size) {
+            return Long.compareUnsigned(address, virtAddress) >= 0
+                    && Long.compareUnsigned(address - virtAddress + size, fileSize) <= 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("0x%x..0x%x %c%c%c", virtAddress, virtAddress + memorySize,
+                    (flags & PF_R) != 0 ? 'r' : '-', isWritable() ? 'w' : '-', isExecutable() ? 'x' : '-');
+        }
+
+    }
+
+    public interface SymbolVisitor {
+        void visit(String name, long value, long size, int type);
+    }
+
+    private File file;
+
+    private MappedByteBuffer buffer;
+
+    private boolean is64;
+
+    private int machine;
+
+    private long entry;
+
+    private List<Section> sections = new ArrayList<Section>();
+
+    private List<Segment> segments = new ArrayList<Segment>();
+
+    private long word(int offset) {
+        return is64 ? buffer.getLong(offset) : Integer.toUnsignedLong(buffer.getInt(offset));
+    }
+
+    private int offset(long value) throws IOException {
+        if (value < 0 || value > buffer.capacity())
+            throw new IOException("offset 0x" + Long.toHexString(value) + " beyond end of " + file.getName());
+        return (int) value;
+    }
+
+    private String string(long table, long index) {
+        int start = (int) (table + index);
+        int end = start;
+        while (end < buffer.capacity() && buffer.get(end) != 0)
+            end++;
+
+        byte[] data = new byte[end - start];
+        for (int i = 0; i < data.length; i++)
+            data[i] = buffer.get(start + i);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    private void parseHeader() throws IOException {
+        if (buffer.capacity() < 52 || buffer.getInt(0) != 0x7f454c46)
+            throw new IOException(file.getName() + " is not an ELF file");
+
+        switch (buffer.get(4)) {
+        case 1: is64 = false; break;
+        case 2: is64 = true; break;
+        default: throw new IOException("invalid ELF class in " + file.getName());
+        }
+
+        switch (buffer.get(5)) {
+        case 1: buffer.order(ByteOrder.LITTLE_ENDIAN); break;
+        case 2: buffer.order(ByteOrder.BIG_ENDIAN); break;
+        default: throw new IOException("invalid ELF data encoding in " + file.getName());
+        }
+
+        machine = Short.toUnsignedInt(buffer.getShort(18));
+        entry = word(24);
+    }
+
+    private void parseSegments() throws IOException {
+        int phoff = offset(word(is64 ? 32 : 28));
+        int phentsize = Short.toUnsignedInt(buffer.getShort(is64 ? 54 : 42));
+        int phnum = Short.toUnsignedInt(buffer.getShort(is64 ? 56 : 44));
+        offset(phoff + (long) phentsize * phnum);
+
+        for (int i = 0; i < phnum; i++) {
+            int ph = phoff + i * phentsize;
+            Segment segment = new Segment();
+            segment.type = buffer.getInt(ph);
+            if (is64) {
+                segment.flags = buffer.getInt(ph + 4);
+                segment.offset = buffer.getLong(ph + 8);
+                segment.virtAddress = buffer.getLong(ph + 16);
+                segment.physAddress = buffer.getLong(ph + 24);
+                segment.fileSize = buffer.getLong(ph + 32);
+                segment.memorySize = buffer.getLong(ph + 40);
+            } else {
+                segment.offset = Integer.toUnsignedLong(buffer.getInt(ph + 4));
+                segment.virtAddress = Integer.toUnsignedLong(buffer.getInt(ph + 8));
+                segment.physAddress = Integer.toUnsignedLong(buffer.getInt(ph + 12));
+                segment.fileSize = Integer.toUnsignedLong(buffer.getInt(ph + 16));
+                segment.memorySize = Integer.toUnsignedLong(buffer.getInt(ph + 20));
+                segment.flags = buffer.getInt(ph + 24);
+            }
+
+            offset(segment.offset + segment.fileSize);
+            segments.add(segment);
+        }
+    }
+
+    private void parseSections() throws IOException {
+        int shoff = offset(word(is64 ? 40 : 32));
+        int shentsize = Short.toUnsignedInt(buffer.getShort(is64 ? 58 : 46));
+        int shnum = Short.toUnsignedInt(buffer.getShort(is64 ? 60 : 48));
+        int shstrndx = Short.toUnsignedInt(buffer.getShort(is64 ? 62 : 50));
+        offset(shoff + (long) shentsize * shnum);
+
+        int[] names = new int[shnum];
+        for (int i = 0; i < shnum; i++) {
+            int sh = shoff + i * shentsize;
+            Section section = new Section();
+            names[i] = buffer.getInt(sh);
+            section.type = buffer.getInt(sh + 4);
+            if (is64) {
+                section.flags = buffer.getLong(sh + 8);
+                section.address = buffer.getLong(sh + 16);
+                section.offset = buffer.getLong(sh + 24);
+                section.size = buffer.getLong(sh + 32);
+                section.link = buffer.getInt(sh + 40);
+                section.entrySize = buffer.getLong(sh + 56);
+            } else {
+                section.flags = Integer.toUnsignedLong(buffer.getInt(sh + 8));
+                section.address = Integer.toUnsignedLong(buffer.getInt(sh + 12));
+                section.offset = Integer.toUnsignedLong(buffer.getInt(sh + 16));
+                section.size = Integer.toUnsignedLong(buffer.getInt(sh + 20));
+                section.link = buffer.getInt(sh + 24);
+                section.entrySize = Integer.toUnsignedLong(buffer.getInt(sh + 36));
+            }
+
+            sections.add(section);
+        }
+
+        Section strtab = shstrndx < shnum ? sections.get(shstrndx) : null;
+        for (int i = 0; i < shnum; i++)
+            sections.get(i).name = strtab != null ? string(offset(strtab.offset), names[i]) : "";
+    }
+
+    public ElfFile(File file) throws IOException {
+        this.file = file;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException(file.getName() + " exceeds 2GB");
+            buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+            parseHeader();
+            parseSegments();
+            parseSections();
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException(file.getName() + " is truncated or corrupt", e);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public boolean is64Bit() {
+        return is64;
+    }
+
+    public int getMachine() {
+        return machine;
+    }
+
+    public long getEntry() {
+        return entry;
+    }
+
+    public List<Section> getSections() {
+        return sections;
+    }
+
+    public List<Segment> getSegments() {
+        return segments;
+    }
+
+    public Section findSection(String name) {
+        for (Section section : sections)
+            if (section.name.equals(name))
+                return section;
+        return null;
+    }
+
+    /**
+     * Reports every named, defined function and object symbol from
+     * <tt>.symtab</tt> and <tt>.dynsym</tt> to <tt>visitor</tt>, without
+     * materializing a symbol table.
+     * @return the number of symbols visited
+     */
+    public int visitSymbols(SymbolVisitor visitor) throws IOException {
+        int count = 0;
+        for (Section section : sections) {
+            if (section.type != SHT_SYMTAB && section.type != SHT_DYNSYM)
+                continue;
+            if (section.link >= sections.size())
+                continue;
+
+            int strtab = offset(sections.get(section.link).offset);
+            int start = offset(section.offset);
+            int entsize = section.entrySize != 0 ? (int) section.entrySize : (is64 ? 24 : 16);
+            long end = offset(section.offset + section.size);
+
+            for (int sym = start; sym + entsize <= end; sym += entsize) {
+                int name = buffer.getInt(sym);
+                if (name == 0)
+                    continue;
+
+                int info = Byte.toUnsignedInt(buffer.get(sym + (is64 ? 4 : 12)));
+                int type = info & 0xf;
+                if (type != STT_FUNC && type != STT_OBJECT)
+                    continue;
+
+                int shndx = Short.toUnsignedInt(buffer.getShort(sym + (is64 ? 6 : 14)));
+                if (shndx == SHN_UNDEF)
+                    continue;
+
+                long value = is64 ? buffer.getLong(sym + 8) : Integer.toUnsignedLong(buffer.getInt(sym + 4));
+                long size = is64 ? buffer.getLong(sym + 16) : Integer.toUnsignedLong(buffer.getInt(sym + 8));
+                visitor.visit(string(strtab, Integer.toUnsignedLong(name)), value, size, type);
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the loadable segment holding the file-backed range
+     * [address, address + size), or <tt>null</tt> if there is none.
+     */
+    public Segment findSegment(long address, long size) {
+        for (Segment segment : segments)
+            if (segment.isLoadable() && segment.contains(address, size))
+                return segment;
+        return null;
+    }
+
+    /**
+     * Copies the file-backed bytes loaded to <tt>address</tt> into
+     * <tt>data</tt>, returning false if the range is not backed by a single
+     * loadable segment.
+     */
+    public boolean read(long address, byte[] data, int off, int len) {
+        Segment segment = findSegment(address, len);
+        if (segment == null)
+            return false;
+
+        ByteBuffer view = buffer.duplicate();
+        view.position((int) (segment.offset + address - segment.virtAddress));
+        view.get(data, off, len);
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return file.getName();
+    }
+
+}
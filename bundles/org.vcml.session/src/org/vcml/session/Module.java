@@ -23,6 +23,7 @@ import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
@@ -71,12 +72,31 @@ public class Module {
 
     private Module parent;
 
+    private String fullName;
+
+    private int position = 0;
+
+    private ModuleIndex index;
+
     private ArrayList<Module> children;
 
     private ArrayList<Attribute> attributes;
 
     private ArrayList<Command> commands;
 
+    /**
+     * Orders children by kind once after parsing, so that viewers can
+     * address them by index without sorting on every access.
+     */
+    private void sortChildren() {
+        children.sort(Comparator.comparing(Module::getKind));
+        children.trimToSize();
+        for (int i = 0; i < children.size(); i++) {
+            children.get(i).position = i;
+            children.get(i).sortChildren();
+        }
+    }
+
     private void parseXML(String xml) throws XMLStreamException, SessionException {
         InputStream in = new ByteArrayInputStream(xml.getBytes());
         XMLInputFactory inputFactory = XMLInputFactory.newInstance();
@@ -137,9 +157,23 @@ public class Module {
     }
 
     public String getName() {
-        if ((parent == null) || parent.isRoot())
-            return getBaseName();
-        return parent.getName() + HIERARCHY_CHAR + getBaseName();
+        if (fullName == null) {
+            if ((parent == null) || parent.isRoot())
+                fullName = getBaseName();
+            else
+                fullName = parent.getName() + HIERARCHY_CHAR + getBaseName();
+        }
+
+        return fullName;
+    }
+
+    public ElfFile getImage() {
+        return session != null ? session.getImage(getName()) : null;
+    }
+
+    public void setImage(ElfFile image) {
+        if (session != null)
+            session.attachImage(getName(), image);
     }
 
     public String getKind() {
@@ -158,6 +192,28 @@ public class Module {
         return children.toArray(new Module[children.size()]);
     }
 
+    public int getChildCount() {
+        return children.size();
+    }
+
+    public Module getChild(int index) {
+        return children.get(index);
+    }
+
+    /**
+     * Returns the index of this module among the children of its parent.
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the search index of the hierarchy this module belongs to.
+     */
+    public ModuleIndex getIndex() {
+        return parent == null ? index : parent.getIndex();
+    }
+
     public Attribute[] getAttributes() {
         return attributes.toArray(new Attribute[attributes.size()]);
     }
@@ -191,6 +247,8 @@ public class Module {
 
         try {
             parseXML(resp.getValue(0));
+            sortChildren();
+            index = new ModuleIndex(this);
         } catch (XMLStreamException e) {
             throw new SessionException("failed to parse object hierarchy", e);
         }
@@ -242,6 +300,11 @@ public class Module {
         return getName().equals(((Module) other).getName());
     }
 
+    @Override
+    public int hashCode() {
+        return getName().hashCode();
+    }
+
     @Override
     public String toString() {
         return getName();
@@ -0,0 +1,280 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.session;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Search index over an object hierarchy, built once after parsing. Modules
+ * are numbered in depth-first order and found by kind, by prefix of their
+ * base, kind or attribute names using sorted term tables, and by substring
+ * of their base names using a trigram index whose candidates are verified.
+ * Queries of the form <tt>kind:text</tt> and <tt>attr:text</tt> restrict the
+ * search to kinds or attribute names, queries containing a
+ * {@link Module#HIERARCHY_CHAR} match against full names.
+ */
+public class ModuleIndex {
+
+    public static final String PREFIX_KIND = "kind:";
+
+    public static final String PREFIX_ATTRIBUTE = "attr:";
+
+    private Module[] modules;
+
+    private String[] names;
+
+    private Terms nameTerms;
+
+    private Terms kindTerms;
+
+    private Terms attributeTerms;
+
+    private HashMap<Long, int[]> trigrams = new HashMap<Long, int[]>();
+
+    /**
+     * Sorted distinct terms, each with the ascending ids of the modules it
+     * occurs in.
+     */
+    private static class Terms {
+
+        private String[] terms;
+
+        private int[][] postings;
+
+        private Terms(TreeMap<String, Postings> map) {
+            terms = new String[map.size()];
+            postings = new int[map.size()][];
+
+            int i = 0;
+            for (Map.Entry<String, Postings> entry : map.entrySet()) {
+                terms[i] = entry.getKey();
+                postings[i++] = entry.getValue().toArray();
+            }
+        }
+
+        private int find(String term) {
+            return Arrays.binarySearch(terms, term);
+        }
+
+        private void collectPrefix(String prefix, BitSet result) {
+            int i = find(prefix);
+            if (i < 0)
+                i = -i - 1;
+
+            for (; i < terms.length && terms[i].startsWith(prefix); i++)
+                for (int id : postings[i])
+                    result.set(id);
+        }
+
+    }
+
+    /**
+     * Growable list of ascending module ids.
+     */
+    private static class Postings {
+
+        private int[] ids = new int[4];
+
+        private int count = 0;
+
+        private void add(int id) {
+            if (count > 0 && ids[count - 1] == id)
+                return;
+            if (count == ids.length)
+                ids = Arrays.copyOf(ids, count * 2);
+            ids[count++] = id;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(ids, count);
+        }
+
+    }
+
+    private static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    private static long trigram(String text, int pos) {
+        return ((long) text.charAt(pos) << 32) | ((long) text.charAt(pos + 1) << 16) | text.charAt(pos + 2);
+    }
+
+    private static void add(TreeMap<String, Postings> map, String term, int id) {
+        Postings postings = map.get(term);
+        if (postings == null) {
+            postings = new Postings();
+            map.put(term, postings);
+        }
+
+        postings.add(id);
+    }
+
+    private void buildTrigrams() {
+        HashMap<Long, Postings> map = new HashMap<Long, Postings>();
+        for (int id = 0; id < names.length; id++) {
+            String name = names[id];
+            for (int pos = 0; pos + 3 <= name.length(); pos++) {
+                Long key = trigram(name, pos);
+                Postings postings = map.get(key);
+                if (postings == null) {
+                    postings = new Postings();
+                    map.put(key, postings);
+                }
+
+                postings.add(id);
+            }
+        }
+
+        for (Map.Entry<Long, Postings> entry : map.entrySet())
+            trigrams.put(entry.getKey(), entry.getValue().toArray());
+    }
+
+    public ModuleIndex(Module root) {
+        List<Module> order = new ArrayList<Module>();
+        Deque<Module> pending = new ArrayDeque<Module>();
+        for (int i = root.getChildCount() - 1; i >= 0; i--)
+            pending.push(root.getChild(i));
+
+        while (!pending.isEmpty()) {
+            Module module = pending.pop();
+            order.add(module);
+            for (int i = module.getChildCount() - 1; i >= 0; i--)
+                pending.push(module.getChild(i));
+        }
+
+        modules = order.toArray(new Module[order.size()]);
+        names = new String[modules.length];
+
+        TreeMap<String, Postings> nameMap = new TreeMap<String, Postings>();
+        TreeMap<String, Postings> kindMap = new TreeMap<String, Postings>();
+        TreeMap<String, Postings> attributeMap = new TreeMap<String, Postings>();
+        for (int id = 0; id < modules.length; id++) {
+            Module module = modules[id];
+            names[id] = normalize(module.getBaseName());
+            add(nameMap, names[id], id);
+            add(kindMap, normalize(module.getKind()), id);
+            for (Attribute attribute : module.getAttributes())
+                add(attributeMap, normalize(attribute.getBaseName()), id);
+        }
+
+        nameTerms = new Terms(nameMap);
+        kindTerms = new Terms(kindMap);
+        attributeTerms = new Terms(attributeMap);
+        buildTrigrams();
+    }
+
+    public int size() {
+        return modules.length;
+    }
+
+    /**
+     * Returns all distinct kinds in the hierarchy, sorted.
+     */
+    public String[] getKinds() {
+        return kindTerms.terms.clone();
+    }
+
+    /**
+     * Returns all modules of exactly <tt>kind</tt> in depth-first order.
+     */
+    public List<Module> findKind(String kind) {
+        int i = kindTerms.find(normalize(kind));
+        List<Module> result = new ArrayList<Module>();
+        if (i >= 0)
+            for (int id : kindTerms.postings[i])
+                result.add(modules[id]);
+        return result;
+    }
+
+    private void searchSubstring(String query, BitSet result, int limit) {
+        List<int[]> lists = new ArrayList<int[]>();
+        for (int pos = 0; pos + 3 <= query.length(); pos++) {
+            int[] postings = trigrams.get(trigram(query, pos));
+            if (postings == null)
+                return;
+            lists.add(postings);
+        }
+
+        lists.sort((a, b) -> Integer.compare(a.length, b.length));
+        int found = 0;
+        for (int id : lists.get(0)) {
+            if (found == limit)
+                return;
+
+            boolean candidate = true;
+            for (int i = 1; candidate && i < lists.size(); i++)
+                candidate = Arrays.binarySearch(lists.get(i), id) >= 0;
+            if (candidate && names[id].contains(query)) {
+                result.set(id);
+                found++;
+            }
+        }
+    }
+
+    private void searchFullName(String query, BitSet result, int limit) {
+        int split = query.lastIndexOf(Module.HIERARCHY_CHAR);
+        BitSet candidates = new BitSet(modules.length);
+        nameTerms.collectPrefix(query.substring(split + 1), candidates);
+
+        int found = 0;
+        for (int id = candidates.nextSetBit(0); id >= 0 && found < limit; id = candidates.nextSetBit(id + 1)) {
+            if (normalize(modules[id].getName()).contains(query)) {
+                result.set(id);
+                found++;
+            }
+        }
+    }
+
+    /**
+     * Returns at most <tt>limit</tt> modules matching <tt>query</tt>, case
+     * insensitive and in depth-first order.
+     */
+    public List<Module> search(String query, int limit) {
+        String text = normalize(query.trim());
+        BitSet result = new BitSet(modules.length);
+
+        if (text.startsWith(PREFIX_KIND))
+            kindTerms.collectPrefix(text.substring(PREFIX_KIND.length()).trim(), result);
+        else if (text.startsWith(PREFIX_ATTRIBUTE))
+            attributeTerms.collectPrefix(text.substring(PREFIX_ATTRIBUTE.length()).trim(), result);
+        else if (text.contains(Module.HIERARCHY_CHAR))
+            searchFullName(text, result, limit);
+        else if (text.length() >= 3)
+            searchSubstring(text, result, limit);
+        else if (!text.isEmpty())
+            nameTerms.collectPrefix(text, result);
+
+        List<Module> matches = new ArrayList<Module>();
+        for (int id = result.nextSetBit(0); id >= 0 && matches.size() < limit; id = result.nextSetBit(id + 1))
+            matches.add(modules[id]);
+        return matches;
+    }
+
+}
@@ -22,8 +22,10 @@ package org.vcml.session;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.util.List;
 
 public class Protocol {
 
@@ -32,14 +34,15 @@ public class Protocol {
     }
 
     private static String escape(String s) {
-        String esc = "";
-        for (char c : s.toCharArray()) {
+        StringBuilder esc = new StringBuilder(s.length() + 16);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
             if (needsEscape(c))
-                esc = esc + '}' + (char)(c ^ 0x20);
+                esc.append('}').append((char)(c ^ 0x20));
             else
-                esc = esc + c;
+                esc.append(c);
         }
-        return esc;
+        return esc.toString();
     }
 
     private static int calcChecksum(String str) {
@@ -54,13 +57,27 @@ public class Protocol {
         return Integer.parseInt(txt, 16);
     }
 
+    private static String join(String... args) {
+        StringBuilder command = new StringBuilder();
+        for (int i = 0; i < args.length - 1; i++)
+            command.append(args[i]).append(',');
+        command.append(args[args.length - 1]);
+        return command.toString();
+    }
+
     private Socket socket;
 
+    private BufferedReader reader;
+
+    private OutputStream writer;
+
     public Protocol(String host, int port) throws SessionException {
         try {
             socket = new Socket();
             socket.setTcpNoDelay(true);
             socket.connect(new InetSocketAddress(host, port), 1000);
+            reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            writer = socket.getOutputStream();
         } catch (IOException e) {
             throw new SessionException("Failed to connect to session", e);
         }
@@ -78,25 +95,37 @@ public class Protocol {
     public static final String GETA = "geta";
     public static final String SETA = "seta";
 
-    public void send_char(int val) throws SessionException {
+    public static final int PIPELINE_DEPTH = 16;
+
+    public synchronized void send_char(int val) throws SessionException {
         try {
-            socket.getOutputStream().write(val);
-            socket.getOutputStream().flush();
+            writer.write(val);
+            writer.flush();
         } catch (IOException e) {
             throw new SessionException("Failed to contact session", e);
         }
     }
 
-    public void send(String message) throws SessionException {
+    private static String frame(String message) {
+        // Packet format: $<message>#<8bit-checksum>
+        String payload = escape(message);
+        int checksum = calcChecksum(payload);
+        return "$" + payload + "#" + String.format("%02X", checksum);
+    }
+
+    private void transmit(String message) throws SessionException {
         try {
-            // Packet format: $<message>#<8bit-checksum>
-            String payload = escape(message);
-            int checksum = calcChecksum(payload);
-            String packet = "$" + payload + "#" + String.format("%02X", checksum);
-            socket.getOutputStream().write(packet.getBytes());
-            socket.getOutputStream().flush();
-
-            int response = socket.getInputStream().read();
+            writer.write(frame(message).getBytes());
+            writer.flush();
+            expectAck();
+        } catch (IOException e) {
+            throw new SessionException("Failed to contact session", e);
+        }
+    }
+
+    private void expectAck() throws SessionException {
+        try {
+            int response = reader.read();
             switch (response) {
             case '+':
                 break; // all good
@@ -112,17 +141,19 @@ public class Protocol {
         }
     }
 
-    public String recv() throws SessionException {
+    public synchronized void send(String message) throws SessionException {
+        transmit(message);
+    }
+
+    private String receive(boolean ack) throws SessionException {
         try {
-            InputStreamReader ireader = new InputStreamReader(socket.getInputStream());
-            BufferedReader breader = new BufferedReader(ireader);
             StringBuilder builder = new StringBuilder();
 
             int checksum = 0;
             boolean inside = false;
             int ch;
 
-            while ((ch = breader.read()) != -1) {
+            while ((ch = reader.read()) != -1) {
                 if (ch == '$') {
                     inside = true;
                     checksum = 0;
@@ -130,15 +161,17 @@ public class Protocol {
                     inside = false;
                     String message = builder.toString();
 
-                    int check1 = breader.read();
-                    int check2 = breader.read();
+                    int check1 = reader.read();
+                    int check2 = reader.read();
 
                     // Verify checksum. This should never fail since the transport layer assures
                     // correct transmission.
                     boolean match = (calcChecksum(check1, check2) == checksum);
 
-                    String resp = match ? "+" : "-";
-                    socket.getOutputStream().write(resp.getBytes());
+                    if (ack) {
+                        writer.write(match ? '+' : '-');
+                        writer.flush();
+                    }
 
                     if (!match)
                         throw new SessionException("Checksum mismatch");
@@ -146,7 +179,7 @@ public class Protocol {
                 } else if (inside) {
                     if (ch == '}') {
                         checksum = (checksum + ch) & 0xFF;
-                        ch = breader.read();
+                        ch = reader.read();
                         checksum = (checksum + ch) & 0xFF;
                         builder.append((char) (ch ^ 0x20));
                     } else {
@@ -165,14 +198,15 @@ public class Protocol {
         throw new SessionException("Lost session connection");
     }
 
-    public Response command(String... args) throws SessionException {
-        StringBuilder command = new StringBuilder();
-        for (int i = 0; i < args.length - 1; i++)
-            command.append(args[i] + ",");
-        command.append(args[args.length - 1]);
+    public synchronized String recv() throws SessionException {
+        return receive(true);
+    }
+
+    public synchronized Response command(String... args) throws SessionException {
+        String command = join(args);
 
-        send(command.toString());
-        Response resp = new Response(command.toString(), recv());
+        send(command);
+        Response resp = new Response(command, recv());
 
         if (resp.isError())
             throw new SessionException(resp.getValue(0));
@@ -180,6 +214,47 @@ public class Protocol {
         return resp;
     }
 
+    /**
+     * Issues a batch of commands without waiting for each reply before sending
+     * the next one. Up to {@link #PIPELINE_DEPTH} commands are in flight, each
+     * followed by the acknowledgement of its future response, so the session
+     * finds the next request already buffered when it finishes the previous
+     * one. A batch thus costs about one round trip per window instead of one
+     * per command. Unlike {@link #command(String...)}, error responses do not
+     * raise an exception but are returned to the caller for inspection. A
+     * transport error leaves the connection in an undefined state.
+     * @param commands  List of commands, each given as its argument vector
+     * @return          Responses in the order of <tt>commands</tt>
+     */
+    public synchronized Response[] pipeline(List<String[]> commands) throws SessionException {
+        Response[] responses = new Response[commands.size()];
+        String[] sent = new String[responses.length];
+        int next = 0;
+
+        try {
+            for (int i = 0; i < responses.length; i++) {
+                StringBuilder burst = new StringBuilder();
+                while (next < responses.length && next - i < PIPELINE_DEPTH) {
+                    sent[next] = join(commands.get(next));
+                    burst.append(frame(sent[next])).append('+');
+                    next++;
+                }
+
+                if (burst.length() > 0) {
+                    writer.write(burst.toString().getBytes());
+                    writer.flush();
+                }
+
+                expectAck();
+                responses[i] = new Response(sent[i], receive(false));
+            }
+        } catch (IOException e) {
+            throw new SessionException("Failed to contact session", e);
+        }
+
+        return responses;
+    }
+
     public void close() throws SessionException {
         try {
             socket.close();
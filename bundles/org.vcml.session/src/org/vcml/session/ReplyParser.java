@@ -0,0 +1,321 @@
+/******************************************************************************
+ *                                                                            *
+ * Copyright 2022 MachineWare GmbH                                            *
+ * All Rights Reserved                                                        *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *     http://www.apache.org/licenses/LICENSE-2.0                             *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package org.vcml.session;
+
+/**
+ * Index-based scanners for the replies of the <tt>disas</tt>, <tt>lsym</tt>,
+ * <tt>dump</tt>, <tt>show</tt> and <tt>read</tt> commands. They operate on
+ * the reply string directly and only allocate for the values they return.
+ */
+public class ReplyParser {
+
+    public interface RegisterVisitor {
+        void visit(String name, long value);
+    }
+
+    /**
+     * Result of parsing a single <tt>disas</tt> line, reusable across lines.
+     */
+    public static class Disassembly {
+
+        private boolean valid;
+
+        private boolean unmapped;
+
+        private String symbol;
+
+        private long virtAddress;
+
+        private long physAddress;
+
+        private String instruction;
+
+        private int size;
+
+        private String text;
+
+        public boolean isValid() {
+            return valid;
+        }
+
+        public boolean isUnmapped() {
+            return unmapped;
+        }
+
+        public String getSymbol() {
+            return symbol;
+        }
+
+        public long getVirtualAddress() {
+            return virtAddress;
+        }
+
+        public long getPhysicalAddress() {
+            return physAddress;
+        }
+
+        public String getInstruction() {
+            return instruction;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == '\f';
+    }
+
+    private static int hexEnd(CharSequence s, int pos, int end) {
+        while (pos < end && Character.digit(s.charAt(pos), 16) >= 0)
+            pos++;
+        return pos;
+    }
+
+    private static int skipSpaces(CharSequence s, int pos, int end) {
+        while (pos < end && isSpace(s.charAt(pos)))
+            pos++;
+        return pos;
+    }
+
+    private static int lineEnd(String s, int pos) {
+        int end = s.indexOf('\n', pos);
+        return end < 0 ? s.length() : end;
+    }
+
+    /**
+     * Parses hexadecimal byte values following the colon of each line of a
+     * <tt>show</tt> or <tt>read</tt> reply into <tt>data</tt>, stopping at
+     * the first token that is not a byte value.
+     * @return number of bytes stored
+     */
+    public static int parseBytes(String reply, byte[] data) {
+        int count = 0;
+        int length = reply.length();
+        for (int pos = 0; pos < length && count < data.length; pos++) {
+            int end = lineEnd(reply, pos);
+            int colon = reply.indexOf(':', pos);
+            if (colon < 0 || colon > end) {
+                pos = end;
+                continue;
+            }
+
+            for (pos = colon + 1; pos < end && count < data.length; pos++) {
+                if (isSpace(reply.charAt(pos)))
+                    continue;
+
+                int token = pos;
+                while (pos < end && !isSpace(reply.charAt(pos)))
+                    pos++;
+                if (pos - token != 2)
+                    continue;
+
+                int hi = Character.digit(reply.charAt(token), 16);
+                int lo = Character.digit(reply.charAt(token + 1), 16);
+                if (hi < 0 || lo < 0)
+                    return count;
+
+                data[count++] = (byte) (hi << 4 | lo);
+            }
+
+            pos = end;
+        }
+
+        return count;
+    }
+
+    /**
+     * Reports every <tt>NAME 0xVALUE</tt> pair of a <tt>dump</tt> reply.
+     * @return number of registers visited
+     */
+    public static int parseRegisters(String reply, RegisterVisitor visitor) {
+        int count = 0;
+        int length = reply.length();
+        int nameStart = -1;
+        int nameEnd = -1;
+
+        for (int pos = skipSpaces(reply, 0, length); pos < length; pos = skipSpaces(reply, pos, length)) {
+            int start = pos;
+            while (pos < length && !isSpace(reply.charAt(pos)))
+                pos++;
+
+            boolean hex = pos - start > 2 && reply.charAt(start) == '0' && reply.charAt(start + 1) == 'x'
+                    && pos - start <= 18 && hexEnd(reply, start + 2, pos) == pos;
+            if (hex && nameStart >= 0) {
+                long value = Long.parseUnsignedLong(reply, start + 2, pos, 16);
+                visitor.visit(reply.substring(nameStart, nameEnd), value);
+                count++;
+                nameStart = -1;
+            } else if (!hex && reply.charAt(pos - 1) != ':') {
+                nameStart = start;
+                nameEnd = pos;
+            } else {
+                nameStart = -1;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the value of register <tt>name</tt> in a <tt>dump</tt> reply,
+     * or <tt>fallback</tt> if the reply does not contain it.
+     */
+    public static long findRegister(String reply, String name, long fallback) {
+        int length = reply.length();
+        for (int pos = reply.indexOf(name); pos >= 0; pos = reply.indexOf(name, pos + 1)) {
+            int value = pos + name.length();
+            if (pos > 0 && !isSpace(reply.charAt(pos - 1)))
+                continue;
+            if (value + 3 > length || reply.charAt(value) != ' ' || reply.charAt(value + 1) != '0'
+                    || reply.charAt(value + 2) != 'x')
+                continue;
+
+            int end = hexEnd(reply, value + 3, length);
+            if (end > value + 3 && end - value - 3 <= 16)
+                return Long.parseUnsignedLong(reply, value + 3, end, 16);
+        }
+
+        return fallback;
+    }
+
+    /**
+     * Reports every function (<tt>F</tt>) and object (<tt>O</tt>) of an
+     * <tt>lsym</tt> reply, with a size of zero.
+     * @return number of symbols visited
+     */
+    public static int parseSymbols(String reply, ElfFile.SymbolVisitor visitor) {
+        // F c03c9de0 xprt_load_transport
+        int count = 0;
+        int length = reply.length();
+        for (int pos = 0; pos < length; pos = lineEnd(reply, pos) + 1) {
+            char kind = reply.charAt(pos);
+            if ((kind != 'F' && kind != 'O') || pos + 2 >= length || reply.charAt(pos + 1) != ' ')
+                continue;
+
+            int addr = pos + 2;
+            int addrEnd = hexEnd(reply, addr, length);
+            if (addrEnd == addr || addrEnd - addr > 16 || addrEnd == length || reply.charAt(addrEnd) != ' ')
+                continue;
+
+            int nameEnd = addrEnd + 1;
+            while (nameEnd < length && (Character.isLetterOrDigit(reply.charAt(nameEnd)) || reply.charAt(nameEnd) == '_'))
+                nameEnd++;
+
+            long value = Long.parseUnsignedLong(reply, addr, addrEnd, 16);
+            int type = kind == 'F' ? ElfFile.STT_FUNC : ElfFile.STT_OBJECT;
+            visitor.visit(reply.substring(addrEnd + 1, nameEnd), value, 0, type);
+            count++;
+        }
+
+        return count;
+    }
+
+    private static boolean parseDisassembly(String line, int pos, Disassembly result) {
+        int end = line.length();
+        pos = skipSpaces(line, pos, end);
+
+        String symbol = "";
+        if (pos < end && line.charAt(pos) == '[') {
+            int close = line.indexOf(']', pos);
+            if (close < 0)
+                return false;
+            symbol = line.substring(pos, close + 1);
+            pos = skipSpaces(line, close + 1, end);
+        }
+
+        int first = pos;
+        int firstEnd = hexEnd(line, first, end);
+        if (firstEnd == first || firstEnd - first > 16)
+            return false;
+
+        long virt = Long.parseUnsignedLong(line, first, firstEnd, 16);
+        long phys = virt;
+        pos = firstEnd;
+        if (pos < end && line.charAt(pos) != ':') {
+            int second = skipSpaces(line, pos, end);
+            int secondEnd = hexEnd(line, second, end);
+            if (secondEnd > second && secondEnd - second <= 16 && secondEnd < end && line.charAt(secondEnd) == ':')
+                phys = Long.parseUnsignedLong(line, second, secondEnd, 16);
+            pos = secondEnd;
+        }
+
+        if (pos + 2 >= end || line.charAt(pos) != ':' || !isSpace(line.charAt(pos + 1)) || line.charAt(pos + 2) != '[')
+            return false;
+
+        int open = pos + 2;
+        int close = line.indexOf(']', open);
+        if (close < 0 || close == open + 1)
+            return false;
+
+        result.valid = true;
+        result.symbol = symbol;
+        result.virtAddress = virt;
+        result.physAddress = phys;
+        result.instruction = line.substring(open, close + 1);
+        result.size = (close - open) / 3;
+        String text = close + 1 < end ? line.substring(close + 1).trim() : "";
+        result.text = text.isEmpty() ? "--" : text;
+        return true;
+    }
+
+    /**
+     * Parses one line of a <tt>disas</tt> reply into <tt>result</tt>. Lines for
+     * unmapped pages (<tt>????????</tt>) are valid, but only carry a symbol.
+     * @return false if the line does not describe an instruction
+     */
+    public static boolean parseDisassembly(String line, Disassembly result) {
+        result.valid = false;
+        result.unmapped = false;
+        result.symbol = "";
+        result.virtAddress = result.physAddress = 0;
+        result.instruction = "";
+        result.size = 0;
+        result.text = "";
+
+        if (line.contains("????????")) {
+            int open = line.indexOf('[');
+            int close = open < 0 ? -1 : line.lastIndexOf(']');
+            result.symbol = close > open ? line.substring(open, close + 1) : null;
+            result.valid = result.unmapped = true;
+            return true;
+        }
+
+        int end = line.length();
+        for (int i = 0; i + 2 < end; i++) {
+            char marker = line.charAt(i + 1);
+            if (!isSpace(line.charAt(i)) || (marker != '>' && marker != '|' && !isSpace(marker))
+                    || !isSpace(line.charAt(i + 2)))
+                continue;
+            if (parseDisassembly(line, i + 3, result))
+                return true;
+        }
+
+        return false;
+    }
+
+}
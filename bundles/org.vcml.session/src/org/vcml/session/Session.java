@@ -25,6 +25,8 @@ import java.io.FilenameFilter;
 import java.time.Duration;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Scanner;
 import java.util.regex.Pattern;
@@ -51,19 +53,21 @@ public class Session {
 
     private Module hierarchy = null;
 
-    private LocalTime simTime = LocalTime.MIN;
+    private volatile LocalTime simTime = LocalTime.MIN;
 
     private Duration quantum;
 
-    private long deltaCycle = -1;
+    private volatile long deltaCycle = -1;
 
     private String syscVersion = "<unknown>";
 
     private String vcmlVersion = "<unknown>";
 
-    private boolean running = false;
+    private volatile boolean running = false;
 
-    private String stopReason = "";
+    private volatile String stopReason = "";
+
+    private HashMap<String, ElfFile> images = new HashMap<String, ElfFile>();
 
     public String getURI() {
         return uri;
@@ -133,6 +137,21 @@ public class Session {
         return stopReason;
     }
 
+    /**
+     * Associates a local ELF image with the module <tt>name</tt>. Images are
+     * kept across reconnects; pass <tt>null</tt> to detach.
+     */
+    public synchronized void attachImage(String name, ElfFile image) {
+        if (image == null)
+            images.remove(name);
+        else
+            images.put(name, image);
+    }
+
+    public synchronized ElfFile getImage(String name) {
+        return images.get(name);
+    }
+
     @Override
     public String toString() {
         return user + "/" + name + " at " + host + ":" + port;
@@ -248,13 +267,67 @@ public class Session {
         return hierarchy.getChildren();
     }
 
+    /**
+     * Returns the root of the object hierarchy, whose children are the top
+     * level objects, or <tt>null</tt> if not connected.
+     */
+    public Module getHierarchy() throws SessionException {
+        if (!isConnected())
+            return null;
+
+        if (hierarchy == null)
+            hierarchy = new Module(this);
+        return hierarchy;
+    }
+
+    public ModuleIndex getModuleIndex() throws SessionException {
+        Module root = getHierarchy();
+        return root != null ? root.getIndex() : null;
+    }
+
     public Module findObject(String name) throws SessionException {
         if (hierarchy == null)
             hierarchy = new Module(this);
         return hierarchy.findChild(name);
     }
 
-    public void continueSimulation() throws SessionException {
+    /**
+     * Executes one command per module through {@link Protocol#pipeline}, so
+     * that up to {@link Protocol#PIPELINE_DEPTH} modules share a round trip.
+     * @param modules   Modules to execute on
+     * @param args      Command and arguments for each of <tt>modules</tt>
+     * @return          Replies in the order of <tt>modules</tt>, <tt>null</tt>
+     *                  for modules that reported an error
+     */
+    public String[] execute(List<Module> modules, List<String[]> args) throws SessionException {
+        if (!isConnected())
+            throw new SessionException("not connected");
+
+        List<String[]> commands = new ArrayList<String[]>();
+        for (int i = 0; i < modules.size(); i++) {
+            String[] arg = args.get(i);
+            String[] command = new String[arg.length + 2];
+            command[0] = Protocol.EXEC;
+            command[1] = modules.get(i).getName();
+            System.arraycopy(arg, 0, command, 2, arg.length);
+            commands.add(command);
+        }
+
+        Response[] responses = protocol.pipeline(commands);
+        String[] replies = new String[responses.length];
+        for (int i = 0; i < responses.length; i++)
+            replies[i] = responses[i].isError() ? null : responses[i].toString();
+        return replies;
+    }
+
+    /**
+     * Executes the same command on each of <tt>modules</tt>, pipelined.
+     */
+    public String[] execute(List<Module> modules, String... args) throws SessionException {
+        return execute(modules, Collections.nCopies(modules.size(), args));
+    }
+
+    public synchronized void continueSimulation() throws SessionException {
         if (!isConnected() || isRunning())
             return;
 
@@ -262,7 +335,7 @@ public class Session {
         running = true;
     }
 
-    public void stopSimulation() throws SessionException {
+    public synchronized void stopSimulation() throws SessionException {
         if (!isConnected() || !isRunning())
             return;
 
@@ -275,11 +348,15 @@ public class Session {
     }
 
     public void stepSimulation() throws SessionException {
+        stepSimulation(quantum);
+    }
+
+    public synchronized void stepSimulation(Duration duration) throws SessionException {
         if (!isConnected() || isRunning())
             return;
 
-        String duration = String.format("%dns", quantum.toNanos());
-        protocol.command(Protocol.RESUME, duration);
+        protocol.command(Protocol.RESUME, String.format("%dns", duration.toNanos()));
+        running = true;
     }
 
     public void quitSimulation() throws SessionException {